@@ -0,0 +1,136 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Reads a CodeGeneratorRequest into a single buffer and parses it with aliasing enabled, so that
+ * the bytes fields of the parsed request share that buffer instead of being copied.
+ *
+ * <p>The plugin parameter can be read from the buffer before the request is parsed, so that the
+ * parameter can decide how parsing is done or measured.
+ */
+public class CodeGeneratorRequestReader {
+  private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+  private CodeGeneratorRequestReader() {}
+
+  /** The bytes of a request that has been read but not parsed. */
+  public static final class RequestBuffer {
+    @Nullable private final ByteBuffer mappedBuffer;
+    @Nullable private final byte[] array;
+    private final int length;
+
+    private RequestBuffer(@Nullable ByteBuffer mappedBuffer, @Nullable byte[] array, int length) {
+      this.mappedBuffer = mappedBuffer;
+      this.array = array;
+      this.length = length;
+    }
+
+    /**
+     * Returns the plugin parameter of the request, or an empty string if it has none. This skips
+     * over the other fields of the request without parsing them.
+     */
+    public String parameter() throws IOException {
+      CodedInputStream codedInput = newCodedInput();
+      String parameter = "";
+      while (true) {
+        int tag = codedInput.readTag();
+        if (tag == 0) {
+          return parameter;
+        }
+        if (WireFormat.getTagFieldNumber(tag) == CodeGeneratorRequest.PARAMETER_FIELD_NUMBER
+            && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+          // As in a full parse, the last value of the field wins.
+          parameter = codedInput.readString();
+        } else if (!codedInput.skipField(tag)) {
+          return parameter;
+        }
+      }
+    }
+
+    public CodeGeneratorRequest parse(ExtensionRegistryLite registry) throws IOException {
+      CodedInputStream codedInput = newCodedInput();
+      codedInput.enableAliasing(true);
+      return CodeGeneratorRequest.parseFrom(codedInput, registry);
+    }
+
+    private CodedInputStream newCodedInput() {
+      return mappedBuffer != null
+          ? CodedInputStream.newInstance(mappedBuffer.duplicate())
+          : CodedInputStream.newInstance(array, 0, length);
+    }
+  }
+
+  /** Reads and parses the request until the end of the stream. */
+  public static CodeGeneratorRequest read(InputStream in, ExtensionRegistryLite registry)
+      throws IOException {
+    return readBuffer(in).parse(registry);
+  }
+
+  /** Reads the request until the end of the stream. Regular files are memory-mapped. */
+  public static RequestBuffer readBuffer(InputStream in) throws IOException {
+    if (in instanceof FileInputStream) {
+      ByteBuffer mappedBuffer = tryMap(((FileInputStream) in).getChannel());
+      if (mappedBuffer != null) {
+        return new RequestBuffer(mappedBuffer, null, 0);
+      }
+    }
+    return readFully(in);
+  }
+
+  // Returns null if the channel is not a non-empty regular file, e.g. when stdin is a pipe.
+  @Nullable
+  private static ByteBuffer tryMap(FileChannel channel) {
+    try {
+      long position = channel.position();
+      long remaining = channel.size() - position;
+      if (remaining <= 0 || remaining > Integer.MAX_VALUE) {
+        return null;
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, position, remaining);
+    } catch (IOException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  private static RequestBuffer readFully(InputStream in) throws IOException {
+    byte[] buffer = new byte[Math.max(MIN_BUFFER_SIZE, in.available())];
+    int length = 0;
+    while (true) {
+      if (length == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      int count = in.read(buffer, length, buffer.length - length);
+      if (count < 0) {
+        break;
+      }
+      length += count;
+    }
+    // Parse from the oversized buffer directly rather than trimming it, which would be a copy.
+    return new RequestBuffer(null, buffer, length);
+  }
+}
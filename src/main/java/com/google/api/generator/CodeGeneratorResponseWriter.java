@@ -0,0 +1,62 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a CodeGeneratorResponse holding a single file without building the response message, so
+ * that the file contents are streamed to the output instead of being copied into a ByteString.
+ */
+public class CodeGeneratorResponseWriter {
+  private CodeGeneratorResponseWriter() {}
+
+  /**
+   * Writes the same bytes as serializing a CodeGeneratorResponse whose only field is a single file
+   * with the given name and contents. The output stream is flushed but not closed.
+   */
+  public static void writeSingleFileResponse(
+      String fileName, SpillableOutputStream content, OutputStream out) throws IOException {
+    long contentSize = content.size();
+    Preconditions.checkState(
+        contentSize <= Integer.MAX_VALUE, "File %s is too large for a response", fileName);
+    long fileMessageSize =
+        CodedOutputStream.computeStringSize(CodeGeneratorResponse.File.NAME_FIELD_NUMBER, fileName)
+            + CodedOutputStream.computeTagSize(CodeGeneratorResponse.File.CONTENT_FIELD_NUMBER)
+            + CodedOutputStream.computeUInt32SizeNoTag((int) contentSize)
+            + contentSize;
+    Preconditions.checkState(
+        fileMessageSize <= Integer.MAX_VALUE, "File %s is too large for a response", fileName);
+
+    // Fields are written in field number order, as the generated serialization code does.
+    CodedOutputStream codedOutput = CodedOutputStream.newInstance(out);
+    codedOutput.writeTag(
+        CodeGeneratorResponse.FILE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    codedOutput.writeUInt32NoTag((int) fileMessageSize);
+    codedOutput.writeString(CodeGeneratorResponse.File.NAME_FIELD_NUMBER, fileName);
+    codedOutput.writeTag(
+        CodeGeneratorResponse.File.CONTENT_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    codedOutput.writeUInt32NoTag((int) contentSize);
+    codedOutput.flush();
+
+    content.writeTo(out);
+    out.flush();
+  }
+}
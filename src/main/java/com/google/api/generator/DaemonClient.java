@@ -0,0 +1,98 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Forwards a plugin request to a running {@link GeneratorDaemon}. */
+public class DaemonClient {
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+  private DaemonClient() {}
+
+  /**
+   * Sends the request read from the input to the daemon listening on the given loopback port, and
+   * copies the daemon's response to the output. Relative paths in the request's plugin parameter
+   * are resolved against the given absolute working directory. Returns false without reading any
+   * input if the daemon's token file cannot be read or no daemon is listening, so that the caller
+   * can fall back to generating in process.
+   */
+  public static boolean tryForward(
+      int port, Path tokenFile, Path workingDirectory, InputStream in, OutputStream out)
+      throws IOException {
+    Preconditions.checkArgument(
+        workingDirectory.isAbsolute(), "Working directory must be absolute: %s", workingDirectory);
+    byte[] token;
+    try {
+      token = Files.readAllBytes(tokenFile);
+    } catch (IOException e) {
+      return false;
+    }
+    if (token.length != GeneratorDaemon.TOKEN_LENGTH) {
+      return false;
+    }
+
+    Socket socket = new Socket();
+    try {
+      socket.connect(
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+    } catch (IOException e) {
+      socket.close();
+      return false;
+    }
+
+    try (Socket s = socket) {
+      DataOutputStream request =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      request.write(token);
+      request.writeUTF(workingDirectory.toString());
+      ByteStreams.copy(in, request);
+      request.flush();
+      socket.shutdownOutput();
+
+      DataInputStream response = new DataInputStream(socket.getInputStream());
+      int status = response.read();
+      if (status == GeneratorDaemon.STATUS_OK) {
+        long length = response.readLong();
+        if (ByteStreams.copy(ByteStreams.limit(response, length), out) != length) {
+          throw new IOException(
+              String.format("Generator daemon on port %d returned a truncated response", port));
+        }
+        out.flush();
+        return true;
+      }
+      if (status == GeneratorDaemon.STATUS_ERROR) {
+        throw new IllegalStateException(
+            "Generator daemon failed: "
+                + new String(ByteStreams.toByteArray(response), StandardCharsets.UTF_8));
+      }
+      throw new IOException(
+          String.format("Generator daemon on port %d returned an invalid response", port));
+    }
+  }
+}
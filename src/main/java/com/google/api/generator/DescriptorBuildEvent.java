@@ -0,0 +1,34 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for building the file descriptor of a single proto file. */
+@Name("com.google.api.generator.DescriptorBuild")
+@Label("Descriptor Build")
+@Description("Building a FileDescriptor from a FileDescriptorProto")
+@Category({"GAPIC Generator", "Descriptors"})
+final class DescriptorBuildEvent extends Event {
+  @Label("File Name")
+  String fileName;
+
+  @Label("Dependency Count")
+  int dependencyCount;
+}
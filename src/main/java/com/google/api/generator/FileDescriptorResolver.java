@@ -0,0 +1,185 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Builds {@link FileDescriptor}s from the file descriptor protos in a CodeGeneratorRequest. */
+public class FileDescriptorResolver {
+  private FileDescriptorResolver() {}
+
+  /** Builds every file descriptor serially, in request order. */
+  public static Map<String, FileDescriptor> resolve(List<FileDescriptorProto> fileDescriptorProtos)
+      throws DescriptorValidationException {
+    Map<String, FileDescriptor> fileDescriptors = Maps.newHashMap();
+    for (FileDescriptorProto fileDescriptorProto : fileDescriptorProtos) {
+      // It is sufficient to look at only previous file descriptors because CodeGeneratorRequest
+      // guarantees that the files are sorted in topological order.
+      FileDescriptor fileDescriptor = build(fileDescriptorProto, fileDescriptors);
+      fileDescriptors.put(fileDescriptor.getName(), fileDescriptor);
+    }
+    return fileDescriptors;
+  }
+
+  /**
+   * Builds every file descriptor on the given pool. Files are grouped into topological levels,
+   * where each file only depends on files in earlier levels, and all files of one level are built
+   * concurrently. The result is equivalent to that of {@link #resolve(List)}.
+   */
+  public static Map<String, FileDescriptor> resolve(
+      List<FileDescriptorProto> fileDescriptorProtos, ForkJoinPool pool)
+      throws DescriptorValidationException, InterruptedException {
+    return resolve(fileDescriptorProtos, pool, PhaseMetrics.disabled());
+  }
+
+  /** Like {@link #resolve(List, ForkJoinPool)}, recording a metrics span for each file built. */
+  public static Map<String, FileDescriptor> resolve(
+      List<FileDescriptorProto> fileDescriptorProtos, ForkJoinPool pool, PhaseMetrics metrics)
+      throws DescriptorValidationException, InterruptedException {
+    Map<String, FileDescriptor> fileDescriptors = Maps.newConcurrentMap();
+    for (List<FileDescriptorProto> level : topologicalLevels(fileDescriptorProtos)) {
+      List<Callable<FileDescriptor>> tasks = new ArrayList<>(level.size());
+      for (FileDescriptorProto fileDescriptorProto : level) {
+        tasks.add(
+            () -> {
+              try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.BUILD_DESCRIPTORS)) {
+                return build(fileDescriptorProto, fileDescriptors);
+              }
+            });
+      }
+
+      // All of a level's dependencies are already in the map, so it is safe to add to the map only
+      // after every task in the level has completed.
+      for (Future<FileDescriptor> future : pool.invokeAll(tasks)) {
+        FileDescriptor fileDescriptor = getResult(future);
+        fileDescriptors.put(fileDescriptor.getName(), fileDescriptor);
+      }
+    }
+    return Maps.newHashMap(fileDescriptors);
+  }
+
+  /**
+   * Returns the protos of the given files and all their transitive dependencies, in request order.
+   * Since the request is topologically sorted, so is the result.
+   */
+  public static List<FileDescriptorProto> dependencyClosure(
+      List<FileDescriptorProto> fileDescriptorProtos, List<String> fileNames) {
+    Map<String, FileDescriptorProto> protosByName = Maps.newHashMap();
+    for (FileDescriptorProto fileDescriptorProto : fileDescriptorProtos) {
+      protosByName.put(fileDescriptorProto.getName(), fileDescriptorProto);
+    }
+
+    Set<String> closure = new HashSet<>();
+    Deque<String> pending = new ArrayDeque<>(fileNames);
+    while (!pending.isEmpty()) {
+      String name = pending.pop();
+      if (!closure.add(name)) {
+        continue;
+      }
+      FileDescriptorProto fileDescriptorProto =
+          Preconditions.checkNotNull(
+              protosByName.get(name), "Missing file descriptor for [%s]", name);
+      pending.addAll(fileDescriptorProto.getDependencyList());
+    }
+
+    List<FileDescriptorProto> closureProtos = new ArrayList<>(closure.size());
+    for (FileDescriptorProto fileDescriptorProto : fileDescriptorProtos) {
+      if (closure.contains(fileDescriptorProto.getName())) {
+        closureProtos.add(fileDescriptorProto);
+      }
+    }
+    return closureProtos;
+  }
+
+  /**
+   * Groups the given protos into levels such that every proto depends only on protos in earlier
+   * levels. Protos within a level keep their relative request order.
+   */
+  static List<List<FileDescriptorProto>> topologicalLevels(
+      List<FileDescriptorProto> fileDescriptorProtos) {
+    Map<String, Integer> fileLevels = Maps.newHashMap();
+    List<List<FileDescriptorProto>> levels = new ArrayList<>();
+    for (FileDescriptorProto fileDescriptorProto : fileDescriptorProtos) {
+      int level = 0;
+      for (String dependency : fileDescriptorProto.getDependencyList()) {
+        Integer dependencyLevel =
+            Preconditions.checkNotNull(
+                fileLevels.get(dependency), "Missing file descriptor for [%s]", dependency);
+        level = Math.max(level, dependencyLevel + 1);
+      }
+      fileLevels.put(fileDescriptorProto.getName(), level);
+      if (level == levels.size()) {
+        levels.add(new ArrayList<>());
+      }
+      levels.get(level).add(fileDescriptorProto);
+    }
+    return levels;
+  }
+
+  private static FileDescriptor build(
+      FileDescriptorProto fileDescriptorProto, Map<String, FileDescriptor> fileDescriptors)
+      throws DescriptorValidationException {
+    DescriptorBuildEvent event = new DescriptorBuildEvent();
+    event.begin();
+
+    // Look up the imported files from previously-built file descriptors.
+    FileDescriptor[] deps = new FileDescriptor[fileDescriptorProto.getDependencyCount()];
+    for (int i = 0; i < fileDescriptorProto.getDependencyCount(); i++) {
+      String name = fileDescriptorProto.getDependency(i);
+      deps[i] =
+          Preconditions.checkNotNull(
+              fileDescriptors.get(name), "Missing file descriptor for [%s]", name);
+    }
+    FileDescriptor fileDescriptor = FileDescriptor.buildFrom(fileDescriptorProto, deps);
+
+    if (event.shouldCommit()) {
+      event.fileName = fileDescriptorProto.getName();
+      event.dependencyCount = deps.length;
+      event.commit();
+    }
+    return fileDescriptor;
+  }
+
+  private static FileDescriptor getResult(Future<FileDescriptor> future)
+      throws DescriptorValidationException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof DescriptorValidationException) {
+        throw (DescriptorValidationException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
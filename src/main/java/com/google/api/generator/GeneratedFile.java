@@ -0,0 +1,40 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.auto.value.AutoValue;
+import com.google.protobuf.ByteString;
+
+/** A file produced by the generator, to be written into the output srcjar. */
+@AutoValue
+public abstract class GeneratedFile {
+  // Path of the file within the srcjar, e.g. "com/google/foo/FooClient.java".
+  public abstract String path();
+
+  public abstract ByteString content();
+
+  public static Builder builder() {
+    return new AutoValue_GeneratedFile.Builder();
+  }
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setPath(String path);
+
+    public abstract Builder setContent(ByteString content);
+
+    public abstract GeneratedFile build();
+  }
+}
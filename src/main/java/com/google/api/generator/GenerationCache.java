@@ -0,0 +1,312 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * An on-disk cache of the files generated for a service. Entries are keyed by a hash of the
+ * service's file and its transitive dependencies and the generator version, so an entry is only
+ * reused when regenerating it would produce the same files. The plugin parameters are not part of
+ * the key, since none of them change the generated files: they control how the generator runs and
+ * how the srcjar is named and compressed.
+ *
+ * <p>Each entry is a serialized CodeGeneratorResponse holding the generated files. Entries are
+ * written atomically, so the cache can be shared by concurrent generator processes. Once the
+ * cache grows beyond its maximum size, the least recently used entries are deleted.
+ *
+ * <p>The sizes of the entries are indexed in memory when the cache is opened and kept up to date
+ * as entries are read and written. The directory is only scanned again when the index shows that
+ * the cache is too large, which also picks up entries written by other processes.
+ */
+public class GenerationCache {
+  private static final String ENTRY_SUFFIX = ".entry";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  // Eviction trims the cache below its maximum size, so that a full cache is not scanned again on
+  // every put.
+  private static final double EVICTION_TARGET_FRACTION = 0.9;
+
+  private static final Supplier<String> GENERATOR_VERSION =
+      Suppliers.memoize(GenerationCache::computeGeneratorVersion);
+
+  private final Path directory;
+  private final long maxBytes;
+  private final String generatorVersion;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  // Digests of the files seen in this run, so that dependencies shared by many services, such as
+  // the common protos, are only serialized and hashed once.
+  private final Map<FileDescriptor, HashCode> fileDigests = new ConcurrentHashMap<>();
+
+  // Sizes of the entries by key, from least to most recently used. Guarded by this.
+  private final LinkedHashMap<String, Long> entrySizes = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+
+  public GenerationCache(Path directory, long maxBytes, String generatorVersion)
+      throws IOException {
+    Preconditions.checkArgument(maxBytes >= 0, "Cache max bytes cannot be negative");
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+    this.generatorVersion = generatorVersion;
+    loadEntries();
+  }
+
+  /**
+   * Returns a version string that changes whenever the generator's code does. This is a hash of
+   * the jar or class directory the generator was loaded from. The rest of the classpath is not
+   * hashed, since the plugin starts a new JVM for every invocation.
+   */
+  public static String generatorVersion() {
+    return GENERATOR_VERSION.get();
+  }
+
+  /** Returns the cache key of the files generated for the given service. */
+  public String key(ServiceDescriptor service) {
+    // The digests of the file and its dependencies are combined in name order, so the key does not
+    // depend on the order of the files in the request.
+    Map<String, FileDescriptor> closure = new TreeMap<>();
+    Deque<FileDescriptor> pending = new ArrayDeque<>();
+    pending.push(service.getFile());
+    while (!pending.isEmpty()) {
+      FileDescriptor file = pending.pop();
+      if (closure.put(file.getName(), file) == null) {
+        pending.addAll(file.getDependencies());
+      }
+    }
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    putString(hasher, generatorVersion);
+    putString(hasher, service.getFullName());
+    for (FileDescriptor file : closure.values()) {
+      hasher.putBytes(fileDigests.computeIfAbsent(file, GenerationCache::digest).asBytes());
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the cached files for the key, or null if there is no valid entry for it. */
+  @Nullable
+  public List<GeneratedFile> get(String key) throws IOException {
+    Path entry = entryPath(key);
+    byte[] bytes;
+    CodeGeneratorResponse response;
+    try {
+      bytes = Files.readAllBytes(entry);
+      response = CodeGeneratorResponse.parseFrom(bytes);
+    } catch (NoSuchFileException e) {
+      removeEntry(key);
+      missCount.incrementAndGet();
+      return null;
+    } catch (InvalidProtocolBufferException e) {
+      Files.deleteIfExists(entry);
+      removeEntry(key);
+      missCount.incrementAndGet();
+      return null;
+    }
+
+    // Touch the entry so that eviction treats it as recently used.
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (NoSuchFileException e) {
+      // Evicted by another process since it was read, which does not affect the result.
+    }
+    addEntry(key, bytes.length);
+    hitCount.incrementAndGet();
+
+    List<GeneratedFile> files = new ArrayList<>(response.getFileCount());
+    for (CodeGeneratorResponse.File file : response.getFileList()) {
+      files.add(
+          GeneratedFile.builder()
+              .setPath(file.getName())
+              .setContent(file.getContentBytes())
+              .build());
+    }
+    return files;
+  }
+
+  /** Stores the files under the key, and then evicts entries if the cache is too large. */
+  public void put(String key, List<GeneratedFile> files) throws IOException {
+    CodeGeneratorResponse.Builder response = CodeGeneratorResponse.newBuilder();
+    for (GeneratedFile file : files) {
+      response.addFileBuilder().setName(file.path()).setContentBytes(file.content());
+    }
+
+    // Readers either see the complete entry or none at all.
+    CodeGeneratorResponse entry = response.build();
+    Path tempFile = Files.createTempFile(directory, key, TEMP_FILE_SUFFIX);
+    try {
+      try (OutputStream out = Files.newOutputStream(tempFile)) {
+        entry.writeTo(out);
+      }
+      Files.move(tempFile, entryPath(key), StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+    if (addEntry(key, entry.getSerializedSize())) {
+      evict();
+    }
+  }
+
+  public long hitCount() {
+    return hitCount.get();
+  }
+
+  public long missCount() {
+    return missCount.get();
+  }
+
+  private Path entryPath(String key) {
+    return directory.resolve(key + ENTRY_SUFFIX);
+  }
+
+  // Records that the entry was used, and returns whether the cache is now too large.
+  private synchronized boolean addEntry(String key, long size) {
+    Long previousSize = entrySizes.put(key, size);
+    totalBytes += size - (previousSize == null ? 0 : previousSize);
+    return totalBytes > maxBytes;
+  }
+
+  private synchronized void removeEntry(String key) {
+    Long size = entrySizes.remove(key);
+    if (size != null) {
+      totalBytes -= size;
+    }
+  }
+
+  // Deletes the least recently used entries until the cache is below its target size.
+  private synchronized void evict() throws IOException {
+    // Rescan the directory, since other processes may have added or removed entries.
+    loadEntries();
+    long targetBytes = (long) (maxBytes * EVICTION_TARGET_FRACTION);
+    Iterator<Map.Entry<String, Long>> entries = entrySizes.entrySet().iterator();
+    while (totalBytes > targetBytes && entries.hasNext()) {
+      Map.Entry<String, Long> entry = entries.next();
+      Files.deleteIfExists(entryPath(entry.getKey()));
+      totalBytes -= entry.getValue();
+      entries.remove();
+    }
+  }
+
+  // Indexes the entries in the directory, using their modification times as their last use.
+  private synchronized void loadEntries() throws IOException {
+    Map<String, BasicFileAttributes> attributes = new HashMap<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+      for (Path entry : stream) {
+        String fileName = entry.getFileName().toString();
+        try {
+          attributes.put(
+              fileName.substring(0, fileName.length() - ENTRY_SUFFIX.length()),
+              Files.readAttributes(entry, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+          // Deleted by another process.
+        }
+      }
+    }
+
+    List<String> keys = new ArrayList<>(attributes.keySet());
+    keys.sort(Comparator.comparing(key -> attributes.get(key).lastModifiedTime()));
+    entrySizes.clear();
+    totalBytes = 0;
+    for (String key : keys) {
+      long size = attributes.get(key).size();
+      entrySizes.put(key, size);
+      totalBytes += size;
+    }
+  }
+
+  private static HashCode digest(FileDescriptor file) {
+    return Hashing.sha256().hashBytes(file.toProto().toByteArray());
+  }
+
+  @VisibleForTesting
+  static String computeGeneratorVersion() {
+    CodeSource codeSource = Main.class.getProtectionDomain().getCodeSource();
+    Preconditions.checkState(codeSource != null, "Cannot locate the generator's code");
+    try {
+      return hashLocation(Paths.get(codeSource.getLocation().toURI()));
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException("Cannot locate the generator's code", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Hashes the contents of a jar or class directory.
+  @VisibleForTesting
+  static String hashLocation(Path location) throws IOException {
+    if (Files.isDirectory(location)) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      putDirectory(hasher, location);
+      return hasher.hash().toString();
+    }
+    return MoreFiles.asByteSource(location).hash(Hashing.sha256()).toString();
+  }
+
+  // Hashes the relative paths and contents of the files under the directory, in path order.
+  private static void putDirectory(Hasher hasher, Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      putString(hasher, directory.relativize(file).toString());
+      hasher.putBytes(MoreFiles.asByteSource(file).hash(Hashing.sha256()).asBytes());
+    }
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    hasher.putInt(bytes.length).putBytes(bytes);
+  }
+}
@@ -0,0 +1,279 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived generator process that serves plugin requests forwarded by {@link DaemonClient}, so
+ * that each protoc invocation runs on an already-warm JVM.
+ *
+ * <p>The daemon listens on a loopback port, which any local user can connect to, so clients must
+ * prove they can read the daemon's token file. A client sends the token, its working directory,
+ * against which relative paths in the plugin parameter are resolved, and then the serialized
+ * CodeGeneratorRequest, and closes its side of the connection. The daemon generates the whole
+ * response before it answers, with a status byte followed by either the length and bytes of the
+ * serialized CodeGeneratorResponse, or a UTF-8 error message. The daemon exits after it has been
+ * idle for the configured timeout.
+ *
+ * <p>Requests are handled on one thread per CPU, and a bounded number of further requests wait for
+ * a thread. Connections beyond that wait in the server socket's backlog until a request finishes.
+ */
+public class GeneratorDaemon {
+  public static final String PORT_ENV_VAR = "GAPIC_GENERATOR_DAEMON_PORT";
+  public static final String TOKEN_FILE_ENV_VAR = "GAPIC_GENERATOR_DAEMON_TOKEN_FILE";
+  public static final String IDLE_TIMEOUT_ENV_VAR = "GAPIC_GENERATOR_DAEMON_IDLE_TIMEOUT_SECONDS";
+
+  static final int STATUS_OK = 0;
+  static final int STATUS_ERROR = 1;
+  static final int TOKEN_LENGTH = 32;
+
+  private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+  // How often the accept loop wakes up to check whether the daemon has been idle for too long.
+  private static final int IDLE_CHECK_INTERVAL_MILLIS = 1000;
+  private static final int BACKLOG = 50;
+  private static final int QUEUED_REQUESTS_PER_THREAD = 2;
+  // Responses larger than this are buffered in a temporary file until they are complete.
+  private static final long RESPONSE_SPILL_THRESHOLD = 64L * 1024 * 1024;
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+  private final ServerSocket serverSocket;
+  private final byte[] token;
+  private final long idleTimeoutNanos;
+  private final ExecutorService executor;
+  // One permit per request that is being handled or is waiting for a thread. The accept loop takes
+  // a permit before it accepts a connection, so the executor's queue never overflows.
+  private final Semaphore requestPermits;
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private volatile long lastActivityNanos = System.nanoTime();
+
+  /**
+   * Binds to the given loopback port, or to an ephemeral one if the port is 0. Only clients that
+   * send the given token are served.
+   */
+  public GeneratorDaemon(int port, byte[] token, long idleTimeout, TimeUnit unit)
+      throws IOException {
+    Preconditions.checkArgument(
+        token.length == TOKEN_LENGTH, "Token must be %s bytes", TOKEN_LENGTH);
+    Preconditions.checkArgument(idleTimeout > 0, "Idle timeout must be positive");
+    this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+    this.token = token.clone();
+    this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    int threadCount = Runtime.getRuntime().availableProcessors();
+    int queueCapacity = threadCount * QUEUED_REQUESTS_PER_THREAD;
+    this.executor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity));
+    this.requestPermits = new Semaphore(threadCount + queueCapacity);
+    serverSocket.setSoTimeout(
+        (int) Math.min(IDLE_CHECK_INTERVAL_MILLIS, Math.max(1, unit.toMillis(idleTimeout))));
+  }
+
+  public static void main(String[] args) throws IOException {
+    String port =
+        Preconditions.checkNotNull(
+            System.getenv(PORT_ENV_VAR), "Environment variable %s is not set", PORT_ENV_VAR);
+    String tokenFile =
+        Preconditions.checkNotNull(
+            System.getenv(TOKEN_FILE_ENV_VAR),
+            "Environment variable %s is not set",
+            TOKEN_FILE_ENV_VAR);
+    String idleTimeout = System.getenv(IDLE_TIMEOUT_ENV_VAR);
+    byte[] token = newToken();
+    GeneratorDaemon daemon =
+        new GeneratorDaemon(
+            Integer.parseInt(port),
+            token,
+            idleTimeout == null ? DEFAULT_IDLE_TIMEOUT_SECONDS : Long.parseLong(idleTimeout),
+            TimeUnit.SECONDS);
+    writeTokenFile(Paths.get(tokenFile), token);
+    daemon.serve();
+  }
+
+  /** Returns a new random token. */
+  public static byte[] newToken() {
+    byte[] token = new byte[TOKEN_LENGTH];
+    new SecureRandom().nextBytes(token);
+    return token;
+  }
+
+  /**
+   * Atomically replaces the token file. On POSIX file systems, only its owner can read it, which
+   * limits the clients of the daemon to the user that started it.
+   */
+  public static void writeTokenFile(Path tokenFile, byte[] token) throws IOException {
+    Path directory = tokenFile.toAbsolutePath().getParent();
+    Path tempFile =
+        FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+            ? Files.createTempFile(
+                directory,
+                "token",
+                ".tmp",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+            : Files.createTempFile(directory, "token", ".tmp");
+    try {
+      Files.write(tempFile, token);
+      Files.move(
+          tempFile, tokenFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Serves requests until the daemon has been idle for the timeout or {@link #close()} is called.
+   * Requests are handled concurrently.
+   */
+  public void serve() throws IOException {
+    try {
+      while (!serverSocket.isClosed()) {
+        try {
+          if (!requestPermits.tryAcquire(IDLE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            // Every permit is in use, so the daemon is not idle.
+            continue;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        Socket socket;
+        try {
+          socket = serverSocket.accept();
+        } catch (SocketTimeoutException e) {
+          requestPermits.release();
+          if (activeRequests.get() == 0
+              && System.nanoTime() - lastActivityNanos >= idleTimeoutNanos) {
+            return;
+          }
+          continue;
+        } catch (SocketException e) {
+          requestPermits.release();
+          if (serverSocket.isClosed()) {
+            return;
+          }
+          throw e;
+        }
+
+        activeRequests.incrementAndGet();
+        executor.execute(() -> handle(socket));
+      }
+    } finally {
+      serverSocket.close();
+      executor.shutdown();
+    }
+  }
+
+  /** Stops accepting requests. Requests that are already being handled run to completion. */
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void handle(Socket socket) {
+    try (Socket s = socket) {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      DataOutputStream out =
+          new DataOutputStream(
+              new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE));
+      if (!isAuthorized(in)) {
+        writeError(out, "Invalid generator daemon token");
+      } else {
+        Path workingDirectory = Paths.get(in.readUTF());
+        if (workingDirectory.isAbsolute()) {
+          respond(in, workingDirectory, out);
+        } else {
+          writeError(out, "Working directory must be absolute: " + workingDirectory);
+        }
+      }
+      out.flush();
+    } catch (IOException e) {
+      // The client has gone away, and there is nobody left to report the failure to.
+    } finally {
+      lastActivityNanos = System.nanoTime();
+      activeRequests.decrementAndGet();
+      requestPermits.release();
+    }
+  }
+
+  private boolean isAuthorized(InputStream in) throws IOException {
+    byte[] clientToken = new byte[TOKEN_LENGTH];
+    return ByteStreams.read(in, clientToken, 0, TOKEN_LENGTH) == TOKEN_LENGTH
+        && MessageDigest.isEqual(token, clientToken);
+  }
+
+  // The status is only written once the whole response has been generated, so that a failure
+  // part way through is reported as an error rather than as a truncated response.
+  private static void respond(InputStream in, Path workingDirectory, DataOutputStream out)
+      throws IOException {
+    SpillableOutputStream response = new SpillableOutputStream(RESPONSE_SPILL_THRESHOLD);
+    try {
+      try {
+        Main.run(in, response, workingDirectory);
+        response.close();
+      } catch (Throwable t) {
+        StringWriter message = new StringWriter();
+        t.printStackTrace(new PrintWriter(message));
+        writeError(out, message.toString());
+        return;
+      }
+      out.write(STATUS_OK);
+      out.writeLong(response.size());
+      response.writeTo(out);
+    } finally {
+      response.discard();
+    }
+  }
+
+  private static void writeError(DataOutputStream out, String message) throws IOException {
+    out.write(STATUS_ERROR);
+    out.write(message.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for writing a single generated file into the srcjar. */
+@Name("com.google.api.generator.JarEntryWrite")
+@Label("Jar Entry Write")
+@Description("Writing, and possibly compressing, a generated file into the srcjar")
+@Category({"GAPIC Generator", "Output"})
+final class JarEntryWriteEvent extends Event {
+  @Label("Entry Name")
+  String entryName;
+
+  @Label("Uncompressed Size")
+  @DataAmount
+  long uncompressedSize;
+}
@@ -0,0 +1,66 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/** Writes the srcjar with a {@link JarOutputStream}, which deflates on the writing thread. */
+class JarStreamSrcJarWriter extends SrcJarWriter {
+  private final JarOutputStream jos;
+  private final boolean stored;
+
+  JarStreamSrcJarWriter(OutputStream out, boolean stored, int deflateLevel) throws IOException {
+    this.jos = new JarOutputStream(out);
+    this.stored = stored;
+    jos.setLevel(deflateLevel);
+  }
+
+  @Override
+  public SrcJarEntry prepare(GeneratedFile file) {
+    if (!stored) {
+      // The JarOutputStream computes the CRC of deflated entries as it writes them.
+      return super.prepare(file);
+    }
+    // Stored entries need their CRC before the data, so it is computed when the entry is prepared.
+    return SrcJarEntry.builder()
+        .setPath(file.path())
+        .setContent(file.content())
+        .setCrc32(crc32(file.content()))
+        .build();
+  }
+
+  @Override
+  public void write(SrcJarEntry entry) throws IOException {
+    JarEntry jarEntry = new JarEntry(entry.path());
+    if (stored) {
+      jarEntry.setMethod(ZipEntry.STORED);
+      jarEntry.setSize(entry.content().size());
+      jarEntry.setCompressedSize(entry.content().size());
+      jarEntry.setCrc(entry.crc32());
+    }
+    jos.putNextEntry(jarEntry);
+    entry.content().writeTo(jos);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    jos.finish();
+    jos.flush();
+  }
+}
@@ -23,54 +23,129 @@ import com.google.protobuf.Descriptors.DescriptorValidationException;
 import com.google.protobuf.Descriptors.FileDescriptor;
 import com.google.protobuf.ExtensionRegistry;
 import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
-import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
 
 public class Main {
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
   public static void main(String[] args)
       throws IOException, InterruptedException, DescriptorValidationException {
-    ExtensionRegistry registry = ExtensionRegistry.newInstance();
-    CodeGeneratorRequest request = CodeGeneratorRequest.parseFrom(System.in, registry);
+    // Read stdin directly, since the request reader does its own buffering.
+    InputStream stdin = new FileInputStream(java.io.FileDescriptor.in);
+    // Hand the request to a running daemon if there is one. Otherwise, generate in this process.
+    String daemonPort = System.getenv(GeneratorDaemon.PORT_ENV_VAR);
+    String daemonTokenFile = System.getenv(GeneratorDaemon.TOKEN_FILE_ENV_VAR);
+    if (daemonPort != null
+        && daemonTokenFile != null
+        && DaemonClient.tryForward(
+            Integer.parseInt(daemonPort),
+            Paths.get(daemonTokenFile),
+            Paths.get("").toAbsolutePath(),
+            stdin,
+            System.out)) {
+      return;
+    }
+    run(stdin, System.out);
+  }
 
-    ByteString.Output output = ByteString.newOutput();
-    JarOutputStream jos = new JarOutputStream(output);
-    generateCode(request, jos);
-    jos.flush();
+  /** Reads a CodeGeneratorRequest from the input and writes the CodeGeneratorResponse. */
+  static void run(InputStream in, OutputStream out)
+      throws IOException, InterruptedException, DescriptorValidationException {
+    run(in, out, Paths.get(""));
+  }
 
-    CodeGeneratorResponse.Builder response = CodeGeneratorResponse.newBuilder();
-    response
-        .addFileBuilder()
-        .setName(request.getParameter() + "temp-gen.srcjar")
-        .setContentBytes(output.toByteString());
+  /**
+   * Like {@link #run(InputStream, OutputStream)}, but resolves relative paths in the plugin
+   * parameter against the given directory instead of the current one.
+   */
+  static void run(InputStream in, OutputStream out, Path workingDirectory)
+      throws IOException, InterruptedException, DescriptorValidationException {
+    // The parameter is read ahead of the rest of the request, so that parsing is measured when it
+    // enables metrics.
+    long startNanos = System.nanoTime();
+    CodeGeneratorRequestReader.RequestBuffer requestBuffer =
+        CodeGeneratorRequestReader.readBuffer(in);
+    PluginParameters parameters = PluginParameters.parse(requestBuffer.parameter());
+    PhaseMetrics metrics =
+        parameters.metricsReport() == null
+            ? PhaseMetrics.disabled()
+            : PhaseMetrics.create(startNanos);
+    CodeGeneratorRequest request;
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.PARSE_REQUEST)) {
+      request = requestBuffer.parse(ExtensionRegistry.newInstance());
+    }
+
+    // The srcjar is buffered once and then streamed into the response, since the response framing
+    // needs its length up front.
+    SpillableOutputStream output = new SpillableOutputStream(parameters.spillThreshold());
+    try {
+      SrcJarWriter srcJarWriter =
+          SrcJarWriter.create(
+              output, parameters.srcJarCompression(), parameters.srcJarDeflateLevel());
+      ForkJoinPool pool =
+          parameters.parallelism() > 1 ? new ForkJoinPool(parameters.parallelism()) : null;
+      try {
+        generateCode(request, parameters, workingDirectory, pool, metrics, srcJarWriter);
+      } finally {
+        if (pool != null) {
+          pool.shutdown();
+        }
+      }
+      output.close();
 
-    response.build().writeTo(System.out);
+      try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.WRITE_RESPONSE)) {
+        CodeGeneratorResponseWriter.writeSingleFileResponse(
+            parameters.outputPrefix() + "temp-gen.srcjar",
+            output,
+            new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE));
+      }
+    } finally {
+      output.discard();
+    }
+
+    if (metrics.isEnabled()) {
+      metrics.writeReport(workingDirectory.resolve(parameters.metricsReport()));
+    }
   }
 
-  private static void generateCode(CodeGeneratorRequest request, JarOutputStream jos)
-      throws DescriptorValidationException, IOException {
+  private static void generateCode(
+      CodeGeneratorRequest request,
+      PluginParameters parameters,
+      Path workingDirectory,
+      @Nullable ForkJoinPool pool,
+      PhaseMetrics metrics,
+      SrcJarWriter srcJarWriter)
+      throws DescriptorValidationException, InterruptedException, IOException {
     Preconditions.checkArgument(
         request.getFileToGenerateCount() >= 1, "Expected: at least one proto file input");
     Map<String, String> scopeToJavaPackageMap = Maps.newHashMap();
 
-    // Build the fileDescriptors map so that we can create the FDs for the filesToGenerate.
-    Map<String, FileDescriptor> fileDescriptors = Maps.newHashMap();
-    for (FileDescriptorProto fileDescriptorProto : request.getProtoFileList()) {
-      // Look up the imported files from previous file descriptors.  It is sufficient to look at
-      // only previous file descriptors because CodeGeneratorRequest guarantees that the files
-      // are sorted in topological order.
-      FileDescriptor[] deps = new FileDescriptor[fileDescriptorProto.getDependencyCount()];
-      for (int i = 0; i < fileDescriptorProto.getDependencyCount(); i++) {
-        String name = fileDescriptorProto.getDependency(i);
-        deps[i] =
-            Preconditions.checkNotNull(
-                fileDescriptors.get(name), "Missing file descriptor for [%s]", name);
+    // Build the fileDescriptors map so that we can create the FDs for the filesToGenerate. In lazy
+    // mode, files outside the dependency closure of the filesToGenerate are never built.
+    List<FileDescriptorProto> fileDescriptorProtos =
+        parameters.lazyDescriptors()
+            ? FileDescriptorResolver.dependencyClosure(
+                request.getProtoFileList(), request.getFileToGenerateList())
+            : request.getProtoFileList();
+    Map<String, FileDescriptor> fileDescriptors;
+    if (pool == null) {
+      try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.BUILD_DESCRIPTORS)) {
+        fileDescriptors = FileDescriptorResolver.resolve(fileDescriptorProtos);
       }
-
-      FileDescriptor fileDescriptor = FileDescriptor.buildFrom(fileDescriptorProto, deps);
-      fileDescriptors.put(fileDescriptor.getName(), fileDescriptor);
+    } else {
+      fileDescriptors = FileDescriptorResolver.resolve(fileDescriptorProtos, pool, metrics);
     }
 
     for (FileDescriptor value : fileDescriptors.values()) {
@@ -81,32 +156,143 @@ public class Main {
       }
     }
 
+    List<Descriptors.ServiceDescriptor> services = new ArrayList<>();
     for (String fileToGenerate : request.getFileToGenerateList()) {
       FileDescriptor fileDescriptor =
           Preconditions.checkNotNull(
               fileDescriptors.get(fileToGenerate),
               "Missing file descriptor for [%s]",
               fileToGenerate);
-      for (Descriptors.ServiceDescriptor service : fileDescriptor.getServices()) {
-        String path = getPackage(fileDescriptor) + ".";
-        path = path.replaceAll("\\.", "/");
-        String className = service.getName() + "AsyncClient";
-        JarEntry jarEntry = new JarEntry(path + className + ".java");
-        jos.putNextEntry(jarEntry);
-        // TODO(miraleung): Code generation here.
-        String asyncClientCode =
-            "package com.google.code;\n public class Foo { public int getFoo() { return 1; } }";
-        jos.write(asyncClientCode.getBytes());
-        className = service.getName() + "ClientModule";
-        jarEntry = new JarEntry(path + className + ".java");
-        jos.putNextEntry(jarEntry);
-        // TODO(miraleung): Code generation here.
-        String moduleCode =
-            "package com.google.code;\npublic class Boo { public int getBoo() { return 1; } }";
-        jos.write(moduleCode.getBytes());
+      services.addAll(fileDescriptor.getServices());
+    }
+
+    GenerationCache cache =
+        parameters.cacheDir() == null
+            ? null
+            : new GenerationCache(
+                workingDirectory.resolve(parameters.cacheDir()),
+                parameters.cacheMaxBytes(),
+                GenerationCache.generatorVersion());
+
+    // Services may be generated and their files prepared concurrently, but the files are always
+    // written in service order on this thread, so the srcjar does not depend on the parallelism.
+    if (pool == null) {
+      for (Descriptors.ServiceDescriptor service : services) {
+        List<GeneratedFile> files = generateServiceFiles(service, cache, metrics);
+        writeEntries(prepareFiles(files, srcJarWriter, metrics), srcJarWriter, metrics);
+      }
+    } else {
+      List<ForkJoinTask<List<SrcJarEntry>>> tasks = new ArrayList<>(services.size());
+      for (Descriptors.ServiceDescriptor service : services) {
+        tasks.add(
+            pool.submit(
+                () ->
+                    prepareFiles(
+                        generateServiceFiles(service, cache, metrics),
+                        srcJarWriter,
+                        metrics)));
+      }
+      for (ForkJoinTask<List<SrcJarEntry>> task : tasks) {
+        writeEntries(task.join(), srcJarWriter, metrics);
+      }
+    }
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.WRITE_SRCJAR)) {
+      srcJarWriter.finish();
+    }
+
+    if (cache != null) {
+      metrics.setCounter("cacheHits", cache.hitCount());
+      metrics.setCounter("cacheMisses", cache.missCount());
+    }
+  }
+
+  private static List<GeneratedFile> generateServiceFiles(
+      Descriptors.ServiceDescriptor service,
+      @Nullable GenerationCache cache,
+      PhaseMetrics metrics)
+      throws IOException {
+    ServiceGenerationEvent event = new ServiceGenerationEvent();
+    event.begin();
+
+    List<GeneratedFile> files;
+    boolean cacheHit = false;
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.GENERATE_SERVICES)) {
+      if (cache == null) {
+        files = renderServiceFiles(service);
+      } else {
+        String key = cache.key(service);
+        files = cache.get(key);
+        cacheHit = files != null;
+        if (!cacheHit) {
+          files = renderServiceFiles(service);
+          cache.put(key, files);
+        }
+      }
+    }
+
+    if (event.shouldCommit()) {
+      event.serviceName = service.getFullName();
+      event.fileCount = files.size();
+      for (GeneratedFile file : files) {
+        event.bytesGenerated += file.content().size();
+      }
+      event.cacheHit = cacheHit;
+      event.commit();
+    }
+    return files;
+  }
+
+  private static List<GeneratedFile> renderServiceFiles(Descriptors.ServiceDescriptor service) {
+    String path = getPackage(service.getFile()) + ".";
+    path = path.replaceAll("\\.", "/");
+    List<GeneratedFile> files = new ArrayList<>();
+    String className = service.getName() + "AsyncClient";
+    // TODO(miraleung): Code generation here.
+    String asyncClientCode =
+        "package com.google.code;\n public class Foo { public int getFoo() { return 1; } }";
+    files.add(
+        GeneratedFile.builder()
+            .setPath(path + className + ".java")
+            .setContent(ByteString.copyFromUtf8(asyncClientCode))
+            .build());
+    className = service.getName() + "ClientModule";
+    // TODO(miraleung): Code generation here.
+    String moduleCode =
+        "package com.google.code;\npublic class Boo { public int getBoo() { return 1; } }";
+    files.add(
+        GeneratedFile.builder()
+            .setPath(path + className + ".java")
+            .setContent(ByteString.copyFromUtf8(moduleCode))
+            .build());
+    return files;
+  }
+
+  private static List<SrcJarEntry> prepareFiles(
+      List<GeneratedFile> files, SrcJarWriter srcJarWriter, PhaseMetrics metrics) {
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.WRITE_SRCJAR)) {
+      List<SrcJarEntry> entries = new ArrayList<>(files.size());
+      for (GeneratedFile file : files) {
+        entries.add(srcJarWriter.prepare(file));
+      }
+      return entries;
+    }
+  }
+
+  private static void writeEntries(
+      List<SrcJarEntry> entries, SrcJarWriter srcJarWriter, PhaseMetrics metrics)
+      throws IOException {
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.WRITE_SRCJAR)) {
+      for (SrcJarEntry entry : entries) {
+        JarEntryWriteEvent event = new JarEntryWriteEvent();
+        event.begin();
+        srcJarWriter.write(entry);
+        if (event.shouldCommit()) {
+          event.entryName = entry.path();
+          event.uncompressedSize = entry.content().size();
+          event.commit();
+        }
       }
     }
-    jos.finish();
   }
 
   private static String getPackage(Descriptors.FileDescriptor fileDescriptor) {
@@ -0,0 +1,182 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the srcjar in the zip format directly, so that entries can be deflated when they are
+ * prepared instead of when they are written. Entries that do not shrink when deflated are stored.
+ *
+ * <p>Zip64 is not supported, so the srcjar is limited to 65535 entries and 4 GiB.
+ */
+class ParallelDeflateSrcJarWriter extends SrcJarWriter {
+  private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+  private static final short VERSION_STORED = 10;
+  private static final short VERSION_DEFLATED = 20;
+  // Bit 11 marks the entry names as UTF-8.
+  private static final short FLAG_UTF8 = 0x0800;
+  private static final short METHOD_STORED = 0;
+  private static final short METHOD_DEFLATED = 8;
+
+  private static final int MAX_ENTRIES = 0xffff;
+  private static final long MAX_SIZE = 0xffffffffL;
+  private static final int DEFLATE_BUFFER_SIZE = 8 * 1024;
+
+  private final OutputStream out;
+  private final int deflateLevel;
+  private final short dosTime;
+  private final short dosDate;
+  // Central directory headers of the entries written so far, which are written again at the end.
+  private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+  private int entryCount;
+  private long offset;
+
+  ParallelDeflateSrcJarWriter(OutputStream out, int deflateLevel) {
+    Preconditions.checkArgument(
+        deflateLevel == Deflater.DEFAULT_COMPRESSION || (deflateLevel >= 0 && deflateLevel <= 9),
+        "Invalid deflate level %s",
+        deflateLevel);
+    this.out = out;
+    this.deflateLevel = deflateLevel;
+
+    // All entries get the time the srcjar was started, in MS-DOS format.
+    LocalDateTime now = LocalDateTime.now();
+    this.dosTime =
+        (short) ((now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1));
+    this.dosDate =
+        (short)
+            (((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth());
+  }
+
+  @Override
+  public SrcJarEntry prepare(GeneratedFile file) {
+    SrcJarEntry.Builder entry =
+        SrcJarEntry.builder()
+            .setPath(file.path())
+            .setContent(file.content())
+            .setCrc32(crc32(file.content()));
+    ByteString deflatedContent = deflate(file.content());
+    if (deflatedContent.size() < file.content().size()) {
+      entry.setDeflatedContent(deflatedContent);
+    }
+    return entry.build();
+  }
+
+  @Override
+  public void write(SrcJarEntry entry) throws IOException {
+    boolean deflated = entry.deflatedContent() != null;
+    ByteString data = deflated ? entry.deflatedContent() : entry.content();
+    byte[] name = entry.path().getBytes(StandardCharsets.UTF_8);
+    Preconditions.checkState(entryCount < MAX_ENTRIES, "Too many entries in the srcjar");
+    Preconditions.checkState(offset <= MAX_SIZE, "Srcjar is too large for parallel compression");
+
+    ByteBuffer localHeader = newHeader(LOCAL_FILE_HEADER_SIZE + name.length);
+    localHeader.putInt(LOCAL_FILE_HEADER_SIGNATURE);
+    putEntryFields(localHeader, deflated, entry.crc32(), data.size(), entry.content().size());
+    localHeader.putShort((short) name.length);
+    localHeader.putShort((short) 0); // Extra field length.
+    localHeader.put(name);
+
+    ByteBuffer centralHeader = newHeader(CENTRAL_DIRECTORY_HEADER_SIZE + name.length);
+    centralHeader.putInt(CENTRAL_DIRECTORY_HEADER_SIGNATURE);
+    centralHeader.putShort(VERSION_DEFLATED); // Version made by.
+    putEntryFields(centralHeader, deflated, entry.crc32(), data.size(), entry.content().size());
+    centralHeader.putShort((short) name.length);
+    centralHeader.putShort((short) 0); // Extra field length.
+    centralHeader.putShort((short) 0); // Comment length.
+    centralHeader.putShort((short) 0); // Disk number.
+    centralHeader.putShort((short) 0); // Internal attributes.
+    centralHeader.putInt(0); // External attributes.
+    centralHeader.putInt((int) offset);
+    centralHeader.put(name);
+
+    out.write(localHeader.array());
+    data.writeTo(out);
+    centralDirectory.write(centralHeader.array());
+    offset += localHeader.capacity() + data.size();
+    entryCount++;
+  }
+
+  @Override
+  public void finish() throws IOException {
+    Preconditions.checkState(
+        offset + centralDirectory.size() <= MAX_SIZE,
+        "Srcjar is too large for parallel compression");
+    ByteBuffer end = newHeader(END_OF_CENTRAL_DIRECTORY_SIZE);
+    end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+    end.putShort((short) 0); // Disk number.
+    end.putShort((short) 0); // Disk with the central directory.
+    end.putShort((short) entryCount); // Entries on this disk.
+    end.putShort((short) entryCount);
+    end.putInt(centralDirectory.size());
+    end.putInt((int) offset);
+    end.putShort((short) 0); // Comment length.
+
+    centralDirectory.writeTo(out);
+    out.write(end.array());
+    out.flush();
+  }
+
+  private ByteString deflate(ByteString content) {
+    Deflater deflater = new Deflater(deflateLevel, true);
+    try {
+      deflater.setInput(content.asReadOnlyByteBuffer());
+      deflater.finish();
+      ByteString.Output output = ByteString.newOutput(content.size() / 2 + 1);
+      byte[] buffer = new byte[DEFLATE_BUFFER_SIZE];
+      while (!deflater.finished()) {
+        int count = deflater.deflate(buffer);
+        output.write(buffer, 0, count);
+      }
+      return output.toByteString();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  // Writes the fields shared by the local file header and the central directory header, from the
+  // version needed to extract through the uncompressed size.
+  private void putEntryFields(
+      ByteBuffer header, boolean deflated, long crc32, long compressedSize, long size) {
+    header.putShort(deflated ? VERSION_DEFLATED : VERSION_STORED);
+    header.putShort(FLAG_UTF8);
+    header.putShort(deflated ? METHOD_DEFLATED : METHOD_STORED);
+    header.putShort(dosTime);
+    header.putShort(dosDate);
+    header.putInt((int) crc32);
+    header.putInt((int) compressedSize);
+    header.putInt((int) size);
+  }
+
+  private static ByteBuffer newHeader(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+}
@@ -0,0 +1,212 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each phase of a generator run, and writes
+ * them as a JSON report.
+ *
+ * <p>A phase is measured with spans, which may be opened on any thread. The CPU time and allocated
+ * bytes of a span are those of the thread that opened it, so work that is split across threads is
+ * measured with one span per task, and its wall time is the sum of the tasks' wall times.
+ */
+public class PhaseMetrics {
+  public enum Phase {
+    // Parsing the request once it has been read from the input.
+    PARSE_REQUEST("parseRequest"),
+    BUILD_DESCRIPTORS("buildDescriptors"),
+    // AST construction and rendering of a service's files.
+    GENERATE_SERVICES("generateServices"),
+    // Writing generated files into the srcjar, including deflation.
+    WRITE_SRCJAR("writeSrcjar"),
+    WRITE_RESPONSE("writeResponse");
+
+    private final String jsonName;
+
+    Phase(String jsonName) {
+      this.jsonName = jsonName;
+    }
+  }
+
+  /** A measurement of one piece of work in a phase, which ends when the span is closed. */
+  public interface Span extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final Span NO_OP_SPAN = () -> {};
+  private static final PhaseMetrics DISABLED = new PhaseMetrics(false, 0);
+
+  private final boolean enabled;
+  private final long startNanos;
+  private final Map<Phase, PhaseTotals> phaseTotals = new EnumMap<>(Phase.class);
+  private final Map<String, Long> counters = new LinkedHashMap<>();
+  private final ThreadMXBean threadMXBean;
+  private final boolean measuresCpuTime;
+  // Allocation is only measurable through the HotSpot extension of ThreadMXBean.
+  private final com.sun.management.ThreadMXBean allocationMXBean;
+
+  private PhaseMetrics(boolean enabled, long startNanos) {
+    this.enabled = enabled;
+    this.startNanos = startNanos;
+    this.threadMXBean = enabled ? ManagementFactory.getThreadMXBean() : null;
+    this.measuresCpuTime =
+        enabled
+            && threadMXBean.isCurrentThreadCpuTimeSupported()
+            && threadMXBean.isThreadCpuTimeEnabled();
+    this.allocationMXBean =
+        enabled && measuresAllocation(threadMXBean)
+            ? (com.sun.management.ThreadMXBean) threadMXBean
+            : null;
+    for (Phase phase : Phase.values()) {
+      phaseTotals.put(phase, new PhaseTotals());
+    }
+  }
+
+  public static PhaseMetrics create() {
+    return create(System.nanoTime());
+  }
+
+  /** Returns metrics whose total wall time is measured from {@code startNanos}. */
+  public static PhaseMetrics create(long startNanos) {
+    return new PhaseMetrics(true, startNanos);
+  }
+
+  /** Returns metrics that record nothing, and whose spans do not read any clocks. */
+  public static PhaseMetrics disabled() {
+    return DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Starts measuring work of the given phase on the current thread. */
+  public Span start(Phase phase) {
+    if (!enabled) {
+      return NO_OP_SPAN;
+    }
+    PhaseTotals totals = phaseTotals.get(phase);
+    long spanStartNanos = System.nanoTime();
+    long spanStartCpuNanos = currentThreadCpuNanos();
+    long spanStartAllocatedBytes = currentThreadAllocatedBytes();
+    return () -> {
+      totals.count.increment();
+      totals.wallNanos.add(System.nanoTime() - spanStartNanos);
+      totals.cpuNanos.add(currentThreadCpuNanos() - spanStartCpuNanos);
+      totals.allocatedBytes.add(currentThreadAllocatedBytes() - spanStartAllocatedBytes);
+    };
+  }
+
+  /** Adds a named value, such as a cache hit count, to the report. */
+  public synchronized void setCounter(String name, long value) {
+    if (enabled) {
+      counters.put(name, value);
+    }
+  }
+
+  /** Returns the report as JSON. Counts, times in nanoseconds and sizes in bytes are integers. */
+  public synchronized String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append(String.format("  \"wallNanos\": %d,\n", System.nanoTime() - startNanos));
+    json.append("  \"phases\": {");
+    String separator = "\n";
+    for (Phase phase : Phase.values()) {
+      PhaseTotals totals = phaseTotals.get(phase);
+      json.append(separator)
+          .append(String.format("    \"%s\": {", phase.jsonName))
+          .append(String.format("\"count\": %d, ", totals.count.sum()))
+          .append(String.format("\"wallNanos\": %d, ", totals.wallNanos.sum()))
+          .append(String.format("\"cpuNanos\": %d, ", totals.cpuNanos.sum()))
+          .append(String.format("\"allocatedBytes\": %d}", totals.allocatedBytes.sum()));
+      separator = ",\n";
+    }
+    json.append("\n  },\n");
+    json.append("  \"counters\": {");
+    separator = "\n";
+    for (Map.Entry<String, Long> counter : counters.entrySet()) {
+      json.append(separator)
+          .append("    ")
+          .append(jsonString(counter.getKey()))
+          .append(": ")
+          .append(counter.getValue());
+      separator = ",\n";
+    }
+    json.append(counters.isEmpty() ? "}\n" : "\n  }\n");
+    json.append("}\n");
+    return json.toString();
+  }
+
+  public void writeReport(Path path) throws IOException {
+    Files.write(path, toJson().getBytes(StandardCharsets.UTF_8));
+  }
+
+  // Returns 0 if the JVM does not measure thread CPU time.
+  private long currentThreadCpuNanos() {
+    return measuresCpuTime ? threadMXBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  // Returns 0 if the JVM does not measure thread allocation.
+  private long currentThreadAllocatedBytes() {
+    return allocationMXBean == null
+        ? 0
+        : allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static boolean measuresAllocation(ThreadMXBean threadMXBean) {
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return false;
+    }
+    com.sun.management.ThreadMXBean allocationMXBean =
+        (com.sun.management.ThreadMXBean) threadMXBean;
+    return allocationMXBean.isThreadAllocatedMemorySupported()
+        && allocationMXBean.isThreadAllocatedMemoryEnabled();
+  }
+
+  // Quotes a string for JSON, escaping quotes, backslashes and control characters.
+  static String jsonString(String value) {
+    StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  private static class PhaseTotals {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+  }
+}
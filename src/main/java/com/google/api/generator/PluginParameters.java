@@ -0,0 +1,212 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import javax.annotation.Nullable;
+
+/**
+ * Options passed to the plugin through the protoc parameter string, e.g. "parallelism=8".
+ *
+ * <p>The parameter is a comma-separated list. Entries of the form "key=value" with a known key are
+ * options; all other entries are joined back together and used as the prefix of the output srcjar
+ * name. Unknown keys are kept in the prefix because, before options existed, the whole parameter
+ * was the prefix, and it may contain "=".
+ *
+ * <p>None of the options change the generated files, so they are not part of the {@link
+ * GenerationCache} key. An option that does change them must be added to the key.
+ */
+@AutoValue
+public abstract class PluginParameters {
+  private static final String ENTRY_SEPARATOR = ",";
+  private static final String KEY_VALUE_SEPARATOR = "=";
+
+  private static final String PARALLELISM = "parallelism";
+  private static final String LAZY_DESCRIPTORS = "lazy-descriptors";
+  private static final String SPILL_THRESHOLD = "spill-threshold";
+  private static final String CACHE_DIR = "cache-dir";
+  private static final String CACHE_MAX_BYTES = "cache-max-bytes";
+  private static final String METRICS_REPORT = "metrics-report";
+  private static final String SRCJAR_COMPRESSION = "srcjar-compression";
+  private static final String SRCJAR_DEFLATE_LEVEL = "srcjar-deflate-level";
+
+  private static final long DEFAULT_SPILL_THRESHOLD = 64L * 1024 * 1024;
+  private static final long DEFAULT_CACHE_MAX_BYTES = 1024L * 1024 * 1024;
+
+  public abstract String outputPrefix();
+
+  // Number of worker threads used by the generator. A value of 1 runs every stage serially on
+  // the calling thread.
+  public abstract int parallelism();
+
+  // If true, only the files to generate and their transitive dependencies are resolved into file
+  // descriptors, instead of every file in the request.
+  public abstract boolean lazyDescriptors();
+
+  // Size in bytes above which the srcjar is buffered in a temporary file instead of in memory.
+  public abstract long spillThreshold();
+
+  // Directory of the on-disk cache of generated files. Caching is disabled if this is not set.
+  @Nullable
+  public abstract String cacheDir();
+
+  // Size in bytes that the on-disk cache is trimmed to after new entries are added.
+  public abstract long cacheMaxBytes();
+
+  // Path of the JSON report of per-phase timings. No metrics are collected if this is not set.
+  @Nullable
+  public abstract String metricsReport();
+
+  // How srcjar entries are compressed: "deflate", "stored" or "parallel". Parallel compression runs
+  // on the worker threads of the parallelism setting.
+  public abstract SrcJarWriter.Compression srcJarCompression();
+
+  // Deflate level of srcjar entries, from 0 to 9, or -1 for the default level.
+  public abstract int srcJarDeflateLevel();
+
+  public static PluginParameters parse(String parameter) {
+    Builder builder = builder();
+    List<String> prefixEntries = new ArrayList<>();
+    for (String entry : parameter.split(ENTRY_SEPARATOR, -1)) {
+      int separatorIndex = entry.indexOf(KEY_VALUE_SEPARATOR);
+      if (separatorIndex < 0) {
+        prefixEntries.add(entry);
+        continue;
+      }
+
+      String key = entry.substring(0, separatorIndex).trim();
+      String value = entry.substring(separatorIndex + 1).trim();
+      switch (key) {
+        case PARALLELISM:
+          builder.setParallelism(parseInt(key, value));
+          break;
+        case LAZY_DESCRIPTORS:
+          builder.setLazyDescriptors(parseBoolean(key, value));
+          break;
+        case SPILL_THRESHOLD:
+          builder.setSpillThreshold(parseLong(key, value));
+          break;
+        case CACHE_DIR:
+          builder.setCacheDir(value.isEmpty() ? null : value);
+          break;
+        case CACHE_MAX_BYTES:
+          builder.setCacheMaxBytes(parseLong(key, value));
+          break;
+        case METRICS_REPORT:
+          builder.setMetricsReport(value.isEmpty() ? null : value);
+          break;
+        case SRCJAR_COMPRESSION:
+          builder.setSrcJarCompression(parseCompression(key, value));
+          break;
+        case SRCJAR_DEFLATE_LEVEL:
+          builder.setSrcJarDeflateLevel(parseInt(key, value));
+          break;
+        default:
+          prefixEntries.add(entry);
+      }
+    }
+    return builder.setOutputPrefix(String.join(ENTRY_SEPARATOR, prefixEntries)).build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_PluginParameters.Builder()
+        .setOutputPrefix("")
+        .setParallelism(1)
+        .setLazyDescriptors(false)
+        .setSpillThreshold(DEFAULT_SPILL_THRESHOLD)
+        .setCacheMaxBytes(DEFAULT_CACHE_MAX_BYTES)
+        .setSrcJarCompression(SrcJarWriter.Compression.DEFLATE)
+        .setSrcJarDeflateLevel(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  private static int parseInt(String key, String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format("Plugin parameter %s expects an integer, got %s", key, value), e);
+    }
+  }
+
+  private static long parseLong(String key, String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          String.format("Plugin parameter %s expects an integer, got %s", key, value), e);
+    }
+  }
+
+  private static SrcJarWriter.Compression parseCompression(String key, String value) {
+    for (SrcJarWriter.Compression compression : SrcJarWriter.Compression.values()) {
+      if (compression.name().toLowerCase().equals(value)) {
+        return compression;
+      }
+    }
+    throw new IllegalArgumentException(
+        String.format(
+            "Plugin parameter %s expects deflate, stored or parallel, got %s", key, value));
+  }
+
+  private static boolean parseBoolean(String key, String value) {
+    Preconditions.checkArgument(
+        value.equals("true") || value.equals("false"),
+        "Plugin parameter %s expects true or false, got %s",
+        key,
+        value);
+    return Boolean.parseBoolean(value);
+  }
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setOutputPrefix(String outputPrefix);
+
+    public abstract Builder setParallelism(int parallelism);
+
+    public abstract Builder setLazyDescriptors(boolean lazyDescriptors);
+
+    public abstract Builder setSpillThreshold(long spillThreshold);
+
+    public abstract Builder setCacheDir(String cacheDir);
+
+    public abstract Builder setCacheMaxBytes(long cacheMaxBytes);
+
+    public abstract Builder setMetricsReport(String metricsReport);
+
+    public abstract Builder setSrcJarCompression(SrcJarWriter.Compression srcJarCompression);
+
+    public abstract Builder setSrcJarDeflateLevel(int srcJarDeflateLevel);
+
+    abstract PluginParameters autoBuild();
+
+    public PluginParameters build() {
+      PluginParameters parameters = autoBuild();
+      Preconditions.checkState(parameters.parallelism() >= 1, "Parallelism must be at least 1");
+      Preconditions.checkState(
+          parameters.spillThreshold() >= 0, "Spill threshold cannot be negative");
+      Preconditions.checkState(
+          parameters.cacheMaxBytes() >= 0, "Cache max bytes cannot be negative");
+      Preconditions.checkState(
+          parameters.srcJarDeflateLevel() >= Deflater.DEFAULT_COMPRESSION
+              && parameters.srcJarDeflateLevel() <= Deflater.BEST_COMPRESSION,
+          "Srcjar deflate level must be from -1 to 9");
+      return parameters;
+    }
+  }
+}
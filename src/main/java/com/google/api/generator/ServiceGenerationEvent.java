@@ -0,0 +1,42 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for generating the files of a single service. */
+@Name("com.google.api.generator.ServiceGeneration")
+@Label("Service Generation")
+@Description("Generating, or loading from the cache, the files of a service")
+@Category({"GAPIC Generator", "Generation"})
+final class ServiceGenerationEvent extends Event {
+  @Label("Service Name")
+  String serviceName;
+
+  @Label("File Count")
+  int fileCount;
+
+  @Label("Bytes Generated")
+  @DataAmount
+  long bytesGenerated;
+
+  @Label("Cache Hit")
+  boolean cacheHit;
+}
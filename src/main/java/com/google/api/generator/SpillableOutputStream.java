@@ -0,0 +1,157 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream that keeps its contents in memory until they exceed a threshold, and then moves
+ * them to a temporary file. Contents are stored in chunks, so growing the stream never copies the
+ * bytes written so far.
+ */
+public class SpillableOutputStream extends OutputStream {
+  private static final int MIN_CHUNK_SIZE = 8 * 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+  private static final String TEMP_FILE_PREFIX = "gapic-generator-java";
+
+  private final long spillThreshold;
+  private final List<byte[]> chunks = new ArrayList<>();
+
+  private byte[] currentChunk;
+  private int currentChunkPosition;
+  private long size;
+  private boolean closed;
+
+  // Only set once the contents have been spilled.
+  private Path spillFile;
+  private OutputStream spillStream;
+
+  public SpillableOutputStream(long spillThreshold) {
+    Preconditions.checkArgument(spillThreshold >= 0, "Spill threshold cannot be negative");
+    this.spillThreshold = spillThreshold;
+  }
+
+  /** Returns the number of bytes written so far. */
+  public long size() {
+    return size;
+  }
+
+  public boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    Preconditions.checkState(!closed, "Cannot write to a closed stream");
+    if (spillStream == null && size + len > spillThreshold) {
+      spill();
+    }
+    size += len;
+    if (spillStream != null) {
+      spillStream.write(b, off, len);
+      return;
+    }
+
+    while (len > 0) {
+      if (currentChunk == null || currentChunkPosition == currentChunk.length) {
+        newChunk();
+      }
+      int count = Math.min(len, currentChunk.length - currentChunkPosition);
+      System.arraycopy(b, off, currentChunk, currentChunkPosition, count);
+      currentChunkPosition += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (spillStream != null) {
+      spillStream.flush();
+    }
+  }
+
+  /** Stops accepting writes. The contents remain available to {@link #writeTo(OutputStream)}. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (spillStream != null) {
+      spillStream.close();
+    }
+  }
+
+  /** Copies the contents to the given stream, without materializing them in a single array. */
+  public void writeTo(OutputStream out) throws IOException {
+    if (spillFile == null) {
+      writeChunksTo(out);
+      return;
+    }
+
+    if (!closed) {
+      spillStream.flush();
+    }
+    Files.copy(spillFile, out);
+  }
+
+  /** Closes the stream and releases its contents, including any temporary file. */
+  public void discard() throws IOException {
+    close();
+    chunks.clear();
+    currentChunk = null;
+    if (spillFile != null) {
+      Files.deleteIfExists(spillFile);
+    }
+  }
+
+  private void newChunk() {
+    // Grow geometrically so that small outputs stay small and large ones use few chunks.
+    int chunkSize = (int) Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / 2));
+    currentChunk = new byte[chunkSize];
+    currentChunkPosition = 0;
+    chunks.add(currentChunk);
+  }
+
+  private void writeChunksTo(OutputStream out) throws IOException {
+    for (byte[] chunk : chunks) {
+      int length = chunk == currentChunk ? currentChunkPosition : chunk.length;
+      out.write(chunk, 0, length);
+    }
+  }
+
+  private void spill() throws IOException {
+    Path file = Files.createTempFile(TEMP_FILE_PREFIX, ".tmp");
+    OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file));
+    writeChunksTo(stream);
+    chunks.clear();
+    currentChunk = null;
+    spillFile = file;
+    spillStream = stream;
+  }
+}
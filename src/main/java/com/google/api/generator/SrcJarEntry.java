@@ -0,0 +1,54 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.auto.value.AutoValue;
+import com.google.protobuf.ByteString;
+import javax.annotation.Nullable;
+
+/** A generated file that has been prepared by a {@link SrcJarWriter} for writing. */
+@AutoValue
+public abstract class SrcJarEntry {
+  public static final long NO_CRC32 = -1;
+
+  public abstract String path();
+
+  public abstract ByteString content();
+
+  // CRC-32 of the uncompressed content, or NO_CRC32 if the writer does not need it ahead of the
+  // data.
+  public abstract long crc32();
+
+  // Raw deflate data of the content, if it was compressed ahead of writing.
+  @Nullable
+  public abstract ByteString deflatedContent();
+
+  public static Builder builder() {
+    return new AutoValue_SrcJarEntry.Builder().setCrc32(NO_CRC32);
+  }
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setPath(String path);
+
+    public abstract Builder setContent(ByteString content);
+
+    public abstract Builder setCrc32(long crc32);
+
+    public abstract Builder setDeflatedContent(ByteString deflatedContent);
+
+    public abstract SrcJarEntry build();
+  }
+}
@@ -0,0 +1,75 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes generated files into the output srcjar.
+ *
+ * <p>Writing is split in two steps. {@link #prepare(GeneratedFile)} may be called concurrently,
+ * and does any work that does not depend on the position of the entry in the archive, such as
+ * compression. {@link #write(SrcJarEntry)} appends the prepared entries in order from a single
+ * thread.
+ */
+public abstract class SrcJarWriter {
+  public enum Compression {
+    // Entries are deflated by the writing thread. This is the default.
+    DEFLATE,
+    // Entries are stored uncompressed.
+    STORED,
+    // Entries are deflated when prepared, which may happen concurrently.
+    PARALLEL
+  }
+
+  /**
+   * Returns a writer with the given compression. The deflate level is ignored for stored entries,
+   * and is -1 for the default level, or from 0 to 9.
+   */
+  public static SrcJarWriter create(OutputStream out, Compression compression, int deflateLevel)
+      throws IOException {
+    switch (compression) {
+      case DEFLATE:
+        return new JarStreamSrcJarWriter(out, false, deflateLevel);
+      case STORED:
+        return new JarStreamSrcJarWriter(out, true, deflateLevel);
+      case PARALLEL:
+        return new ParallelDeflateSrcJarWriter(out, deflateLevel);
+      default:
+        throw new IllegalArgumentException(
+            String.format("Unsupported srcjar compression %s", compression));
+    }
+  }
+
+  /** Prepares a file for writing. May be called concurrently. */
+  public SrcJarEntry prepare(GeneratedFile file) {
+    return SrcJarEntry.builder().setPath(file.path()).setContent(file.content()).build();
+  }
+
+  /** Appends an entry to the srcjar. */
+  public abstract void write(SrcJarEntry entry) throws IOException;
+
+  /** Writes the end of the srcjar, and flushes but does not close the output stream. */
+  public abstract void finish() throws IOException;
+
+  static long crc32(ByteString content) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(content.asReadOnlyByteBuffer());
+    return crc32.getValue();
+  }
+}
@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import javax.annotation.Nullable;
 
 @AutoValue
@@ -48,6 +47,11 @@ public abstract class AnnotationNode implements AstNode {
         .build();
   }
 
+  static void validate(AnnotationNode annotation, NodeChecker checker) {
+    checker.checkState(
+        annotation.type().reference() != null, "Annotations must be an Object type");
+  }
+
   public static Builder builder() {
     return new AutoValue_AnnotationNode.Builder();
   }
@@ -62,8 +66,9 @@ public abstract class AnnotationNode implements AstNode {
 
     public AnnotationNode build() {
       AnnotationNode annotation = autoBuild();
-      Reference ref = annotation.type().reference();
-      Preconditions.checkState(ref != null, "Annotations must be an Object type");
+      if (AstValidator.checksEagerly()) {
+        validate(annotation, NodeChecker.EAGER);
+      }
       return annotation;
     }
   }
@@ -22,6 +22,24 @@ public abstract class AssignmentExpr implements Expr {
 
   public abstract Expr valueExpr();
 
+  static void validate(AssignmentExpr assignmentExpr, NodeChecker checker) {
+    TypeNode lhsType = assignmentExpr.variableExpr().variable().type();
+    TypeNode rhsType = assignmentExpr.valueExpr().type();
+    if (lhsType.isPrimitiveType()) {
+      if (checker.checkTypes(
+          rhsType != TypeNode.NULL, "Null cannot be assigned to the primitive type %s", lhsType)) {
+        checker.checkTypes(
+            lhsType.equals(rhsType), "LHS type %s must match RHS type %s", lhsType, rhsType);
+      }
+    } else if (rhsType != TypeNode.NULL) {
+      checker.checkTypes(
+          lhsType.reference().isAssignableFrom(rhsType.reference()),
+          "LHS type %s must be a supertype of the RHS type %s",
+          lhsType.reference().name(),
+          rhsType.reference().name());
+    }
+  }
+
   public static Builder builder() {
     return new AutoValue_AssignmentExpr.Builder();
   }
@@ -36,27 +54,8 @@ public abstract class AssignmentExpr implements Expr {
 
     public AssignmentExpr build() {
       AssignmentExpr assignmentExpr = autoBuild();
-      TypeNode lhsType = assignmentExpr.variableExpr().variable().type();
-      TypeNode rhsType = assignmentExpr.valueExpr().type();
-      if (lhsType.isPrimitiveType()) {
-        if (rhsType == TypeNode.NULL) {
-          throw new TypeMismatchException(
-              String.format(
-                  "Null cannot be assigned to the primitive type %s", lhsType.toString()));
-        }
-        if (!lhsType.equals(rhsType)) {
-          throw new TypeMismatchException(
-              String.format(
-                  "LHS type %s must match RHS type %s", lhsType.toString(), rhsType.toString()));
-        }
-      } else {
-        if (rhsType != TypeNode.NULL
-            && !lhsType.reference().clazz().isAssignableFrom(rhsType.reference().clazz())) {
-          throw new TypeMismatchException(
-              String.format(
-                  "LHS type %s must be a supertype of the RHS type %s",
-                  lhsType.reference().name(), rhsType.reference().name()));
-        }
+      if (AstValidator.checksEagerly()) {
+        validate(assignmentExpr, NodeChecker.EAGER);
       }
       return assignmentExpr;
     }
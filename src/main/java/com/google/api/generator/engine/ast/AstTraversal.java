@@ -0,0 +1,350 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import javax.annotation.Nullable;
+
+/**
+ * Walks ASTs in source order with pre- and post-order hooks, so that an analysis does not need to
+ * hand-code the recursion of a full {@link AstNodeVisitor}.
+ *
+ * <p>The walk keeps its own stack, so deep trees do not grow the Java stack. {@link
+ * #walkParallel} additionally walks the methods and nested classes of each class as separate
+ * fork-join tasks and combines their results.
+ */
+public final class AstTraversal {
+  private static final AstNode EXIT = visitor -> {};
+
+  private AstTraversal() {}
+
+  /** Pre- and post-order hooks of a walk. */
+  public interface Listener {
+    /** Called before the children of {@code node}; returning false skips them. */
+    default boolean enter(AstNode node) {
+      return true;
+    }
+
+    /** Called after the children of {@code node}, if it was entered. */
+    default void exit(AstNode node) {}
+  }
+
+  /**
+   * A listener that computes a result, and that can be split across the subtrees of a class.
+   *
+   * <p>When the methods and nested classes of a class are forked, {@code exit} is called on the
+   * class only after every forked subtree has been walked. The forked analyses' results are
+   * combined with this analysis's result, but their state is not visible to it.
+   */
+  public interface Analysis<R> extends Listener {
+    /**
+     * Returns a new analysis for a method or nested class that is walked in parallel with this
+     * one. Called on the thread walking this analysis, when it reaches the subtree.
+     */
+    Analysis<R> fork(AstNode subtree);
+
+    R result();
+  }
+
+  /** Returns the children of {@code node}, in the order they appear in source. */
+  public static List<AstNode> children(AstNode node) {
+    List<AstNode> children = new ArrayList<>();
+    node.accept(new ChildCollector(children));
+    return children;
+  }
+
+  public static void walk(AstNode root, Listener listener) {
+    walk(root, listener, null);
+  }
+
+  /**
+   * Returns a listener that forwards each hook to all of {@code listeners} in order, so that
+   * several analyses share one walk. A listener whose {@code enter} returns false stops receiving
+   * hooks for that subtree, while the others still walk it.
+   */
+  public static Listener fuse(Listener... listeners) {
+    return new FusedListener(listeners);
+  }
+
+  /**
+   * Walks {@code root} with {@code analysis}, except that every method and nested class is walked
+   * on {@code pool} by an analysis forked from the one that reached it. Returns the result of
+   * {@code analysis}, folded with the results of the forked analyses in source order.
+   */
+  public static <R> R walkParallel(
+      AstNode root, Analysis<R> analysis, BinaryOperator<R> combiner, ForkJoinPool pool) {
+    return pool.invoke(new WalkTask<>(root, analysis, combiner));
+  }
+
+  /**
+   * Walks {@code root} iteratively. If {@code forked} is not null, methods and nested classes
+   * under {@code root} are added to it instead of being walked, and {@code root} is not exited, so
+   * that the caller can exit it after walking them. Returns whether {@code root} was entered.
+   */
+  private static boolean walk(AstNode root, Listener listener, @Nullable List<AstNode> forked) {
+    // Each entered node with children is pushed back under an EXIT marker, so the walk allocates
+    // no frames, and leaves are exited as soon as they are entered.
+    Deque<AstNode> stack = new ArrayDeque<>();
+    List<AstNode> children = new ArrayList<>();
+    ChildCollector childCollector = new ChildCollector(children);
+    stack.push(root);
+    boolean rootEntered = false;
+    while (!stack.isEmpty()) {
+      AstNode node = stack.pop();
+      if (node == EXIT) {
+        node = stack.pop();
+        // Only the root's exit is at the bottom of the stack.
+        if (forked == null || !stack.isEmpty()) {
+          listener.exit(node);
+        }
+        continue;
+      }
+      if (!listener.enter(node)) {
+        continue;
+      }
+      rootEntered |= node == root;
+      children.clear();
+      node.accept(childCollector);
+      if (children.isEmpty()) {
+        if (forked == null || !stack.isEmpty()) {
+          listener.exit(node);
+        }
+        continue;
+      }
+      stack.push(node);
+      stack.push(EXIT);
+      for (int i = children.size() - 1; i >= 0; i--) {
+        AstNode child = children.get(i);
+        if (forked == null || !isForkable(child)) {
+          stack.push(child);
+        }
+      }
+      if (forked != null) {
+        for (AstNode child : children) {
+          if (isForkable(child)) {
+            forked.add(child);
+          }
+        }
+      }
+    }
+    return rootEntered;
+  }
+
+  private static boolean isForkable(AstNode node) {
+    return node instanceof MethodDefinition || node instanceof ClassDefinition;
+  }
+
+  private static class FusedListener implements Listener {
+    private final Listener[] listeners;
+    // Per listener, the depth within a subtree it has skipped, or 0 if it is walking the node.
+    private final int[] skippedDepths;
+
+    FusedListener(Listener[] listeners) {
+      this.listeners = listeners.clone();
+      this.skippedDepths = new int[listeners.length];
+    }
+
+    @Override
+    public boolean enter(AstNode node) {
+      boolean anyEntered = false;
+      for (int i = 0; i < listeners.length; i++) {
+        if (skippedDepths[i] > 0) {
+          skippedDepths[i]++;
+        } else if (listeners[i].enter(node)) {
+          anyEntered = true;
+        } else {
+          skippedDepths[i] = 1;
+        }
+      }
+      if (!anyEntered) {
+        // The walk will not call exit on this node, so undo the depths pushed above.
+        for (int i = 0; i < listeners.length; i++) {
+          skippedDepths[i]--;
+        }
+      }
+      return anyEntered;
+    }
+
+    @Override
+    public void exit(AstNode node) {
+      for (int i = 0; i < listeners.length; i++) {
+        if (skippedDepths[i] > 0) {
+          skippedDepths[i]--;
+        } else {
+          listeners[i].exit(node);
+        }
+      }
+    }
+  }
+
+  private static class WalkTask<R> extends RecursiveTask<R> {
+    private final AstNode root;
+    private final Analysis<R> analysis;
+    private final BinaryOperator<R> combiner;
+
+    WalkTask(AstNode root, Analysis<R> analysis, BinaryOperator<R> combiner) {
+      this.root = root;
+      this.analysis = analysis;
+      this.combiner = combiner;
+    }
+
+    @Override
+    protected R compute() {
+      List<AstNode> forked = new ArrayList<>();
+      boolean rootEntered = walk(root, analysis, forked);
+
+      List<WalkTask<R>> subtasks = new ArrayList<>(forked.size());
+      for (AstNode subtree : forked) {
+        subtasks.add(new WalkTask<>(subtree, analysis.fork(subtree), combiner));
+      }
+      invokeAll(subtasks);
+      if (rootEntered) {
+        analysis.exit(root);
+      }
+
+      R result = analysis.result();
+      for (WalkTask<R> subtask : subtasks) {
+        result = combiner.apply(result, subtask.join());
+      }
+      return result;
+    }
+  }
+
+  private static class ChildCollector implements AstNodeVisitor {
+    private final List<AstNode> children;
+
+    ChildCollector(List<AstNode> children) {
+      this.children = children;
+    }
+
+    @Override
+    public void visit(IdentifierNode identifier) {}
+
+    @Override
+    public void visit(TypeNode type) {}
+
+    @Override
+    public void visit(ScopeNode scope) {}
+
+    @Override
+    public void visit(AnnotationNode annotation) {
+      children.add(annotation.type());
+    }
+
+    /** =============================== EXPRESSIONS =============================== */
+    @Override
+    public void visit(ValueExpr valueExpr) {
+      children.add(valueExpr.type());
+    }
+
+    @Override
+    public void visit(VariableExpr variableExpr) {
+      children.add(variableExpr.scope());
+      children.add(variableExpr.variable().type());
+      children.add(variableExpr.variable().identifier());
+    }
+
+    @Override
+    public void visit(AssignmentExpr assignmentExpr) {
+      children.add(assignmentExpr.variableExpr());
+      children.add(assignmentExpr.valueExpr());
+    }
+
+    @Override
+    public void visit(MethodInvocationExpr methodInvocationExpr) {
+      children.add(methodInvocationExpr.returnType());
+      addIfPresent(methodInvocationExpr.exprReferenceExpr());
+      addIfPresent(methodInvocationExpr.staticReferenceIdentifier());
+      children.add(methodInvocationExpr.methodIdentifier());
+      children.addAll(methodInvocationExpr.arguments());
+    }
+
+    /** =============================== STATEMENTS =============================== */
+    @Override
+    public void visit(ExprStatement exprStatement) {
+      children.add(exprStatement.expression());
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+      children.add(ifStatement.conditionExpr());
+      children.addAll(ifStatement.body());
+      for (Map.Entry<Expr, List<Statement>> elseIf : ifStatement.elseIfs().entrySet()) {
+        children.add(elseIf.getKey());
+        children.addAll(elseIf.getValue());
+      }
+      children.addAll(ifStatement.elseBody());
+    }
+
+    @Override
+    public void visit(ForStatement forStatement) {
+      children.add(forStatement.localVariableExpr());
+      children.add(forStatement.collectionExpr());
+      children.addAll(forStatement.body());
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+      children.add(whileStatement.conditionExpr());
+      children.addAll(whileStatement.body());
+    }
+
+    @Override
+    public void visit(TryCatchStatement tryCatchStatement) {
+      addIfPresent(tryCatchStatement.tryResourceExpr());
+      children.addAll(tryCatchStatement.tryBody());
+      addIfPresent(tryCatchStatement.catchVariableExpr());
+      children.addAll(tryCatchStatement.catchBody());
+    }
+
+    /** =============================== OTHER =============================== */
+    @Override
+    public void visit(MethodDefinition methodDefinition) {
+      children.addAll(methodDefinition.annotations());
+      children.add(methodDefinition.scope());
+      children.add(methodDefinition.returnType());
+      children.add(methodDefinition.methodIdentifier());
+      children.addAll(methodDefinition.arguments());
+      children.addAll(methodDefinition.throwsExceptions());
+      children.addAll(methodDefinition.body());
+      addIfPresent(methodDefinition.returnExpr());
+    }
+
+    @Override
+    public void visit(ClassDefinition classDefinition) {
+      children.addAll(classDefinition.annotations());
+      children.add(classDefinition.scope());
+      children.add(classDefinition.classIdentifier());
+      addIfPresent(classDefinition.extendsType());
+      children.addAll(classDefinition.implementsTypes());
+      children.addAll(classDefinition.statements());
+      children.addAll(classDefinition.methods());
+      children.addAll(classDefinition.nestedClasses());
+    }
+
+    private void addIfPresent(AstNode node) {
+      if (node != null) {
+        children.add(node);
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/** Thrown by {@link AstValidator} with every violation found in a tree. */
+public class AstValidationException extends RuntimeException {
+  private final ImmutableList<String> violations;
+
+  public AstValidationException(List<String> violations) {
+    super(
+        String.format(
+            "Found %d AST violation(s):\n  %s",
+            violations.size(), String.join("\n  ", violations)));
+    this.violations = ImmutableList.copyOf(violations);
+  }
+
+  public ImmutableList<String> violations() {
+    return violations;
+  }
+}
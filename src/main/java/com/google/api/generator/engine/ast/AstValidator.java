@@ -0,0 +1,207 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Validates whole ASTs in one pass.
+ *
+ * <p>By default every builder checks its node as soon as it is built. Inside a {@link #deferred()}
+ * scope the builders on that thread skip those checks, and the caller runs {@link #validate} on the
+ * finished tree instead. The pass visits every node, checks the methods and nested classes of a
+ * class in parallel, and reports all the violations together.
+ */
+public final class AstValidator {
+  private static final ThreadLocal<Boolean> DEFERRED = ThreadLocal.withInitial(() -> false);
+
+  private AstValidator() {}
+
+  /**
+   * Defers the builder checks on the current thread until the returned scope is closed. Scopes can
+   * be nested.
+   */
+  public static Scope deferred() {
+    Scope scope = new Scope(DEFERRED.get());
+    DEFERRED.set(true);
+    return scope;
+  }
+
+  static boolean checksEagerly() {
+    return !DEFERRED.get();
+  }
+
+  /** Restores the checks that were in effect on this thread when the scope was opened. */
+  public static final class Scope implements AutoCloseable {
+    private final boolean wasDeferred;
+
+    private Scope(boolean wasDeferred) {
+      this.wasDeferred = wasDeferred;
+    }
+
+    @Override
+    public void close() {
+      if (wasDeferred) {
+        DEFERRED.set(true);
+      } else {
+        DEFERRED.remove();
+      }
+    }
+  }
+
+  /** Throws an {@link AstValidationException} listing every violation found under {@code root}. */
+  public static void validate(AstNode root) {
+    validate(root, ForkJoinPool.commonPool());
+  }
+
+  public static void validate(AstNode root, ForkJoinPool pool) {
+    List<String> violations = collectViolations(root, pool);
+    if (!violations.isEmpty()) {
+      throw new AstValidationException(violations);
+    }
+  }
+
+  /** Returns the violations found under {@code root}, in tree order. */
+  public static ImmutableList<String> collectViolations(AstNode root, ForkJoinPool pool) {
+    String location = "";
+    if (root instanceof ClassDefinition) {
+      location = ((ClassDefinition) root).classIdentifier().name();
+    } else if (root instanceof MethodDefinition) {
+      location = ((MethodDefinition) root).methodIdentifier().name();
+    }
+    // Each analysis collects into its own mutable list, which the combiner appends to, so the
+    // violations are only copied into an immutable list once.
+    return ImmutableList.copyOf(
+        AstTraversal.walkParallel(
+            root,
+            new ValidationAnalysis(location),
+            (first, second) -> {
+              first.addAll(second);
+              return first;
+            },
+            pool));
+  }
+
+  /** Checks every node it enters. Methods and nested classes are checked by forked analyses. */
+  private static class ValidationAnalysis implements AstTraversal.Analysis<List<String>> {
+    private final String location;
+    private final NodeChecker.Collecting checker;
+    private final CheckingVisitor visitor;
+
+    ValidationAnalysis(String location) {
+      this.location = location;
+      this.checker = NodeChecker.collecting(location);
+      this.visitor = new CheckingVisitor(checker);
+    }
+
+    @Override
+    public boolean enter(AstNode node) {
+      node.accept(visitor);
+      return true;
+    }
+
+    @Override
+    public AstTraversal.Analysis<List<String>> fork(AstNode subtree) {
+      String name =
+          subtree instanceof ClassDefinition
+              ? ((ClassDefinition) subtree).classIdentifier().name()
+              : ((MethodDefinition) subtree).methodIdentifier().name();
+      return new ValidationAnalysis(location.isEmpty() ? name : location + "." + name);
+    }
+
+    @Override
+    public List<String> result() {
+      return checker.violations();
+    }
+  }
+
+  /** Runs the checks of a single node, without visiting its children. */
+  private static class CheckingVisitor implements AstNodeVisitor {
+    private final NodeChecker checker;
+
+    CheckingVisitor(NodeChecker checker) {
+      this.checker = checker;
+    }
+
+    @Override
+    public void visit(IdentifierNode identifier) {}
+
+    @Override
+    public void visit(TypeNode type) {}
+
+    @Override
+    public void visit(ScopeNode scope) {}
+
+    @Override
+    public void visit(AnnotationNode annotation) {
+      AnnotationNode.validate(annotation, checker);
+    }
+
+    @Override
+    public void visit(ValueExpr valueExpr) {}
+
+    @Override
+    public void visit(VariableExpr variableExpr) {
+      Variable.validate(variableExpr.variable(), checker);
+    }
+
+    @Override
+    public void visit(AssignmentExpr assignmentExpr) {
+      AssignmentExpr.validate(assignmentExpr, checker);
+    }
+
+    @Override
+    public void visit(MethodInvocationExpr methodInvocationExpr) {
+      MethodInvocationExpr.validate(methodInvocationExpr, checker);
+    }
+
+    @Override
+    public void visit(ExprStatement exprStatement) {
+      ExprStatement.validate(exprStatement, checker);
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+      IfStatement.validate(ifStatement, checker);
+    }
+
+    @Override
+    public void visit(ForStatement forStatement) {
+      ForStatement.validate(forStatement, checker);
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+      WhileStatement.validate(whileStatement, checker);
+    }
+
+    @Override
+    public void visit(TryCatchStatement tryCatchStatement) {
+      TryCatchStatement.validate(tryCatchStatement, checker);
+    }
+
+    @Override
+    public void visit(MethodDefinition methodDefinition) {
+      MethodDefinition.validate(methodDefinition, checker);
+    }
+
+    @Override
+    public void visit(ClassDefinition classDefinition) {
+      ClassDefinition.validate(classDefinition, checker);
+    }
+  }
+}
@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.Collections;
 import java.util.List;
@@ -63,6 +62,63 @@ public abstract class ClassDefinition implements AstNode {
     visitor.visit(this);
   }
 
+  static void validate(ClassDefinition classDef, NodeChecker checker) {
+    // Only nested classes can forego having a package.
+    if (!classDef.isNested()) {
+      checker.checkNotNull(
+          classDef.packageString(), "Outer classes must have a package name defined");
+      checker.checkState(!classDef.isStatic(), "Outer classes cannot be static");
+      checker.checkState(
+          !classDef.scope().equals(ScopeNode.PRIVATE), "Outer classes cannot be private");
+    }
+
+    // Abstract classes cannot be marked final.
+    if (classDef.isAbstract()) {
+      checker.checkState(!classDef.isFinal(), "Abstract classes cannot be marked final");
+    }
+
+    // Check abstract extended type.
+    if (classDef.extendsType() != null) {
+      checker.checkState(
+          TypeNode.isReferenceType(classDef.extendsType()),
+          "Classes cannot extend non-reference types");
+      checker.checkState(
+          !classDef.implementsTypes().contains(classDef.extendsType()),
+          "Classes cannot extend and implement the same type");
+    }
+
+    // Check implemented interface types.
+    for (TypeNode implType : classDef.implementsTypes()) {
+      checker.checkState(
+          TypeNode.isReferenceType(implType), "Classes cannot implement non-reference types");
+    }
+
+    for (Statement statement : classDef.statements()) {
+      // TODO(xiaozhenliu): Add CommentStatement check here.
+      if (!checker.checkState(
+          statement instanceof ExprStatement,
+          "Class statement type must be either an expression or comment statement")) {
+        continue;
+      }
+      Expr expr = ((ExprStatement) statement).expression();
+      if (expr instanceof VariableExpr) {
+        VariableExpr variableExpr = (VariableExpr) expr;
+        checker.checkState(
+            variableExpr.isDecl(), "Class expression variable statements must be declarations");
+        checker.checkState(
+            !variableExpr.scope().equals(ScopeNode.LOCAL),
+            "Class variable statement cannot have a local scope");
+      } else if (checker.checkState(
+          expr instanceof AssignmentExpr,
+          "Class expression statement must be assignment or variable declaration")) {
+        VariableExpr variableExpr = ((AssignmentExpr) expr).variableExpr();
+        checker.checkState(
+            !variableExpr.scope().equals(ScopeNode.LOCAL),
+            "Class variable in assignment statement cannot have a local scope");
+      }
+    }
+  }
+
   public static Builder builder() {
     return new AutoValue_ClassDefinition.Builder()
         .setIsNested(false)
@@ -117,60 +173,9 @@ public abstract class ClassDefinition implements AstNode {
 
       ClassDefinition classDef = autoBuild();
 
-      // Only nested classes can forego having a package.
-      if (!classDef.isNested()) {
-        Preconditions.checkNotNull(
-            classDef.packageString(), "Outer classes must have a package name defined");
-        Preconditions.checkState(!classDef.isStatic(), "Outer classes cannot be static");
-        Preconditions.checkState(
-            !classDef.scope().equals(ScopeNode.PRIVATE), "Outer classes cannot be private");
-      }
-
-      // Abstract classes cannot be marked final.
-      if (classDef.isAbstract()) {
-        Preconditions.checkState(!classDef.isFinal(), "Abstract classes cannot be marked final");
-      }
-
-      // Check abstract extended type.
-      if (classDef.extendsType() != null) {
-        Preconditions.checkState(
-            TypeNode.isReferenceType(classDef.extendsType()),
-            "Classes cannot extend non-reference types");
-        Preconditions.checkState(
-            !classDef.implementsTypes().contains(classDef.extendsType()),
-            "Classes cannot extend and implement the same type");
+      if (AstValidator.checksEagerly()) {
+        validate(classDef, NodeChecker.EAGER);
       }
-
-      // Check implemented interface types.
-      for (TypeNode implType : classDef.implementsTypes()) {
-        Preconditions.checkState(
-            TypeNode.isReferenceType(implType), "Classes cannot implement non-reference types");
-      }
-
-      for (Statement statement : classDef.statements()) {
-        // TODO(xiaozhenliu): Add CommentStatement check here.
-        Preconditions.checkState(
-            statement instanceof ExprStatement,
-            "Class statement type must be either an expression or comment statement");
-        Expr expr = ((ExprStatement) statement).expression();
-        if (expr instanceof VariableExpr) {
-          VariableExpr variableExpr = (VariableExpr) expr;
-          Preconditions.checkState(
-              variableExpr.isDecl(), "Class expression variable statements must be declarations");
-          Preconditions.checkState(
-              !variableExpr.scope().equals(ScopeNode.LOCAL),
-              "Class variable statement cannot have a local scope");
-        } else {
-          Preconditions.checkState(
-              expr instanceof AssignmentExpr,
-              "Class expression statement must be assignment or variable declaration");
-          VariableExpr variableExpr = ((AssignmentExpr) expr).variableExpr();
-          Preconditions.checkState(
-              !variableExpr.scope().equals(ScopeNode.LOCAL),
-              "Class variable in assignment statement cannot have a local scope");
-        }
-      }
-
       return classDef;
     }
   }
@@ -0,0 +1,125 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/** A reference to a class that is loaded in the generator. */
+@AutoValue
+public abstract class ConcreteReference extends Reference {
+  // Structurally equal references are canonicalized to one instance, which is dropped once it is no
+  // longer used.
+  private static final Interner<ConcreteReference> INTERNER = Interners.newWeakInterner();
+
+  private static final ClassValue<ConcreteReference> CLAZZ_REFERENCES =
+      new ClassValue<ConcreteReference>() {
+        @Override
+        protected ConcreteReference computeValue(Class<?> clazz) {
+          return builder().setClazz(clazz).build();
+        }
+      };
+
+  public abstract Class clazz();
+
+  @Override
+  public abstract List<Reference> generics();
+
+  public static ConcreteReference withClazz(Class clazz) {
+    return CLAZZ_REFERENCES.get(clazz);
+  }
+
+  public static Builder builder() {
+    return new AutoValue_ConcreteReference.Builder().setGenerics(Collections.emptyList());
+  }
+
+  @Override
+  public String simpleName() {
+    return clazz().getSimpleName();
+  }
+
+  // The reflective lookups are only done once per reference.
+  @Memoized
+  @Override
+  public String pakkage() {
+    return clazz().getPackage().getName();
+  }
+
+  @Memoized
+  @Nullable
+  @Override
+  public String enclosingClassName() {
+    if (clazz().getEnclosingClass() == null) {
+      return null;
+    }
+    String canonicalName = clazz().getCanonicalName();
+    return canonicalName.substring(
+        pakkage().length() + 1, canonicalName.length() - simpleName().length() - 1);
+  }
+
+  @Memoized
+  @Override
+  public String name() {
+    return nameWithGenerics(simpleName(), generics());
+  }
+
+  @Memoized
+  @Override
+  public String fullName() {
+    return clazz().getCanonicalName();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ConcreteReference)) {
+      return false;
+    }
+
+    ConcreteReference ref = (ConcreteReference) o;
+    return clazz().equals(ref.clazz()) && generics().equals(ref.generics());
+  }
+
+  @Memoized
+  @Override
+  public int hashCode() {
+    return 17 * clazz().hashCode() + 31 * generics().hashCode();
+  }
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setClazz(Class clazz);
+
+    public abstract Builder setGenerics(List<Reference> clazzes);
+
+    abstract List<Reference> generics();
+
+    abstract ConcreteReference autoBuild();
+
+    public ConcreteReference build() {
+      // Interned instances are shared, so they must not see later changes to the caller's list.
+      setGenerics(ImmutableList.copyOf(generics()));
+      return INTERNER.intern(autoBuild());
+    }
+  }
+}
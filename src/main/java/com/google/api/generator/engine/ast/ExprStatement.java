@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 
 @AutoValue
 public abstract class ExprStatement implements Statement {
@@ -30,6 +29,19 @@ public abstract class ExprStatement implements Statement {
     return builder().setExpression(expr).build();
   }
 
+  static void validate(ExprStatement exprStatement, NodeChecker checker) {
+    Expr expr = exprStatement.expression();
+    if (expr instanceof VariableExpr) {
+      VariableExpr variableExpr = (VariableExpr) expr;
+      checker.checkState(
+          variableExpr.isDecl(), "Expression variable statements must be declarations");
+    } else {
+      checker.checkState(
+          (expr instanceof MethodInvocationExpr) || (expr instanceof AssignmentExpr),
+          "Expression statements must be either a method invocation or assignment expression");
+    }
+  }
+
   static Builder builder() {
     return new AutoValue_ExprStatement.Builder();
   }
@@ -42,15 +54,8 @@ public abstract class ExprStatement implements Statement {
 
     public ExprStatement build() {
       ExprStatement exprStatement = autoBuild();
-      Expr expr = exprStatement.expression();
-      if (expr instanceof VariableExpr) {
-        VariableExpr variableExpr = (VariableExpr) expr;
-        Preconditions.checkState(
-            variableExpr.isDecl(), "Expression variable statements must be declarations");
-      } else {
-        Preconditions.checkState(
-            (expr instanceof MethodInvocationExpr) || (expr instanceof AssignmentExpr),
-            "Expression statements must be either a method invocation or assignment expression");
+      if (AstValidator.checksEagerly()) {
+        validate(exprStatement, NodeChecker.EAGER);
       }
       return exprStatement;
     }
@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
 
@@ -32,6 +31,11 @@ public abstract class ForStatement implements Statement {
     visitor.visit(this);
   }
 
+  static void validate(ForStatement forStatement, NodeChecker checker) {
+    checker.checkState(
+        forStatement.localVariableExpr().isDecl(), "For-statement variable must be a declaration");
+  }
+
   public static Builder builder() {
     return new AutoValue_ForStatement.Builder();
   }
@@ -48,9 +52,9 @@ public abstract class ForStatement implements Statement {
 
     public ForStatement build() {
       ForStatement forStatement = autoBuild();
-      Preconditions.checkState(
-          forStatement.localVariableExpr().isDecl(),
-          "For-statement variable must be a declaration");
+      if (AstValidator.checksEagerly()) {
+        validate(forStatement, NodeChecker.EAGER);
+      }
       return forStatement;
     }
   }
@@ -14,14 +14,11 @@
 
 package com.google.api.generator.engine.ast;
 
-import com.google.api.generator.engine.lexicon.InvalidSymbol;
-import com.google.api.generator.engine.lexicon.Keyword;
-import com.google.api.generator.engine.lexicon.Literal;
-import com.google.api.generator.engine.lexicon.Operator;
-import com.google.api.generator.engine.lexicon.Separator;
+import com.google.api.generator.engine.lexicon.Identifier;
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
-import java.util.regex.Pattern;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
 @AutoValue
 public abstract class IdentifierNode implements AstNode {
@@ -31,10 +28,19 @@ public abstract class IdentifierNode implements AstNode {
     }
   }
 
-  private static final Pattern NUMERIC_PATTERN = Pattern.compile("^[0-9]");
+  private static final long MAX_POOLED_IDENTIFIERS = 1 << 16;
+
+  // Validated identifiers by name, so that each distinct name is only validated once per process.
+  private static final Cache<String, IdentifierNode> IDENTIFIER_POOL =
+      CacheBuilder.newBuilder().maximumSize(MAX_POOLED_IDENTIFIERS).recordStats().build();
 
   public abstract String name();
 
+  /** Returns the hit and miss counts of the pool of validated identifiers. */
+  public static CacheStats poolStats() {
+    return IDENTIFIER_POOL.stats();
+  }
+
   public static Builder builder() {
     return new AutoValue_IdentifierNode.Builder();
   }
@@ -53,36 +59,41 @@ public abstract class IdentifierNode implements AstNode {
   public abstract static class Builder {
     public abstract Builder setName(String name);
 
+    abstract String name();
+
     abstract IdentifierNode autoBuild();
 
     public IdentifierNode build() throws InvalidIdentifierException {
-      IdentifierNode identifier = autoBuild();
-      String identifierName = identifier.name();
-      Preconditions.checkNotNull(identifierName);
-
-      if (identifierName.isEmpty()) {
-        throw new InvalidIdentifierException("Name cannot be empty.");
+      // A pooled identifier has already been validated, so a hit neither builds nor checks a node.
+      IdentifierNode pooled = IDENTIFIER_POOL.getIfPresent(name());
+      if (pooled != null) {
+        return pooled;
       }
 
-      if (NUMERIC_PATTERN.matcher(identifierName.substring(0, 1)).matches()) {
-        throw new InvalidIdentifierException("Name cannot begin with a number.");
-      }
-
-      if (Literal.isLiteral(identifierName)) {
-        throw new InvalidIdentifierException(
-            String.format("Name %s cannot be a literal", identifierName));
-      }
+      IdentifierNode identifier = validate(autoBuild());
+      pooled = IDENTIFIER_POOL.asMap().putIfAbsent(identifier.name(), identifier);
+      return pooled == null ? identifier : pooled;
+    }
 
-      if (InvalidSymbol.containsInvalidSymbol(identifierName)
-          || Operator.containsOperator(identifierName)
-          || Separator.containsSeparator(identifierName)) {
-        throw new InvalidIdentifierException(
-            String.format("Name %s cannot contain non-alphanumeric characters", identifierName));
-      }
+    private static IdentifierNode validate(IdentifierNode identifier) {
+      String identifierName = identifier.name();
 
-      if (Keyword.isKeyword(identifierName)) {
-        throw new InvalidIdentifierException(
-            String.format("Name %s cannot be a keyword.", identifierName));
+      switch (Identifier.check(identifierName)) {
+        case EMPTY:
+          throw new InvalidIdentifierException("Name cannot be empty.");
+        case STARTS_WITH_DIGIT:
+          throw new InvalidIdentifierException("Name cannot begin with a number.");
+        case LITERAL:
+          throw new InvalidIdentifierException(
+              String.format("Name %s cannot be a literal", identifierName));
+        case NON_ALPHANUMERIC_CHARACTER:
+          throw new InvalidIdentifierException(
+              String.format("Name %s cannot contain non-alphanumeric characters", identifierName));
+        case KEYWORD:
+          throw new InvalidIdentifierException(
+              String.format("Name %s cannot be a keyword.", identifierName));
+        default:
+          break;
       }
 
       return identifier;
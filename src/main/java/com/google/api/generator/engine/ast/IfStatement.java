@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.Collections;
@@ -36,6 +35,12 @@ public abstract class IfStatement implements Statement {
     visitor.visit(this);
   }
 
+  static void validate(IfStatement ifStatement, NodeChecker checker) {
+    checker.checkState(
+        ifStatement.conditionExpr().type().equals(TypeNode.BOOLEAN),
+        "If-condition must be a boolean-typed expression");
+  }
+
   public static Builder builder() {
     return new AutoValue_IfStatement.Builder()
         .setElseIfs(ImmutableMap.of())
@@ -63,9 +68,9 @@ public abstract class IfStatement implements Statement {
 
     public IfStatement build() {
       IfStatement ifStatement = autoBuild();
-      Preconditions.checkState(
-          ifStatement.conditionExpr().type().equals(TypeNode.BOOLEAN),
-          "If-condition must be a boolean-typed expression");
+      if (AstValidator.checksEagerly()) {
+        validate(ifStatement, NodeChecker.EAGER);
+      }
       return ifStatement;
     }
   }
@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.Collections;
 import java.util.List;
@@ -58,6 +57,48 @@ public abstract class MethodDefinition implements AstNode {
     visitor.visit(this);
   }
 
+  static void validate(MethodDefinition method, NodeChecker checker) {
+    // Abstract and modifier checking.
+    if (method.isAbstract()) {
+      checker.checkState(
+          !method.isFinal() && !method.isStatic() && !method.scope().equals(ScopeNode.PRIVATE),
+          "Abstract mehtods cannot be static, final, or private");
+    }
+
+    if (!method.returnType().equals(TypeNode.VOID)) {
+      checker.checkState(
+          method.returnExpr() != null,
+          "Method with non-void return type must have a return expression");
+    }
+
+    // Type-checking.
+    if (method.returnExpr() != null) {
+      checker.checkState(
+          method.returnType().equals(method.returnExpr().type()),
+          "Method return type does not match the return expression type");
+    }
+
+    for (VariableExpr varExpr : method.arguments()) {
+      checker.checkState(
+          varExpr.isDecl(),
+          "Argument %s must be a variable declaration",
+          varExpr.variable().identifier());
+    }
+
+    for (TypeNode exceptionType : method.throwsExceptions()) {
+      if (!checker.checkState(
+          TypeNode.isExceptionType(exceptionType),
+          "Type %s is not an exception type",
+          exceptionType.reference())) {
+        continue;
+      }
+      checker.checkState(
+          !Reference.withClazz(RuntimeException.class).isAssignableFrom(exceptionType.reference()),
+          "RuntimeException type %s does not need to be thrown",
+          exceptionType.reference().name());
+    }
+  }
+
   public static Builder builder() {
     return new AutoValue_MethodDefinition.Builder()
         .setArguments(Collections.emptyList())
@@ -107,14 +148,6 @@ public abstract class MethodDefinition implements AstNode {
 
     abstract boolean isOverride();
 
-    abstract boolean isAbstract();
-
-    abstract boolean isFinal();
-
-    abstract boolean isStatic();
-
-    abstract ScopeNode scope();
-
     abstract MethodDefinition autoBuild();
 
     abstract Builder setMethodIdentifier(IdentifierNode methodIdentifier);
@@ -123,13 +156,6 @@ public abstract class MethodDefinition implements AstNode {
       IdentifierNode methodIdentifier = IdentifierNode.builder().setName(name()).build();
       setMethodIdentifier(methodIdentifier);
 
-      // Abstract and modifier checking.
-      if (isAbstract()) {
-        Preconditions.checkState(
-            !isFinal() && !isStatic() && !scope().equals(ScopeNode.PRIVATE),
-            "Abstract mehtods cannot be static, final, or private");
-      }
-
       // If this method overrides another, ensure that the Override annotaiton is the last one.
       if (isOverride()) {
         annotationsBuilder().add(AnnotationNode.OVERRIDE);
@@ -137,37 +163,9 @@ public abstract class MethodDefinition implements AstNode {
 
       MethodDefinition method = autoBuild();
 
-      if (!method.returnType().equals(TypeNode.VOID)) {
-        Preconditions.checkState(
-            method.returnExpr() != null,
-            "Method with non-void return type must have a return expression");
-      }
-
-      // Type-checking.
-      if (method.returnExpr() != null) {
-        Preconditions.checkState(
-            method.returnType().equals(method.returnExpr().type()),
-            "Method return type does not match the return expression type");
-      }
-
-      for (VariableExpr varExpr : method.arguments()) {
-        Preconditions.checkState(
-            varExpr.isDecl(),
-            String.format(
-                "Argument %s must be a variable declaration", varExpr.variable().identifier()));
+      if (AstValidator.checksEagerly()) {
+        validate(method, NodeChecker.EAGER);
       }
-
-      for (TypeNode exceptionType : method.throwsExceptions()) {
-        Preconditions.checkState(
-            TypeNode.isExceptionType(exceptionType),
-            String.format("Type %s is not an exception type", exceptionType.reference()));
-        Preconditions.checkState(
-            !RuntimeException.class.isAssignableFrom(exceptionType.reference().clazz()),
-            String.format(
-                "RuntimeException type %s does not need to be thrown",
-                exceptionType.reference().name()));
-      }
-
       return method;
     }
   }
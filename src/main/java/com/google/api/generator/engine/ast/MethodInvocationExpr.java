@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
@@ -58,6 +57,13 @@ public abstract class MethodInvocationExpr implements Expr {
 
   public abstract Builder toBuilder();
 
+  static void validate(MethodInvocationExpr methodInvocationExpr, NodeChecker checker) {
+    checker.checkState(
+        methodInvocationExpr.exprReferenceExpr() == null
+            || methodInvocationExpr.staticReferenceIdentifier() == null,
+        "Only the expression reference or the static reference can be set, not both");
+  }
+
   public static Builder builder() {
     return new AutoValue_MethodInvocationExpr.Builder()
         .setReturnType(TypeNode.VOID)
@@ -110,11 +116,9 @@ public abstract class MethodInvocationExpr implements Expr {
       }
 
       MethodInvocationExpr methodInvocationExpr = autoBuild();
-      Preconditions.checkState(
-          methodInvocationExpr.exprReferenceExpr() == null
-              || methodInvocationExpr.staticReferenceIdentifier() == null,
-          "Only the expression reference or the static reference can be set, not both");
-
+      if (AstValidator.checksEagerly()) {
+        validate(methodInvocationExpr, NodeChecker.EAGER);
+      }
       return methodInvocationExpr;
     }
   }
@@ -0,0 +1,101 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the structural checks of AST nodes.
+ *
+ * <p>The eager checker throws on the first failed check, with the same exception types that the
+ * builders have always thrown. A collecting checker instead records every failure, so each check
+ * method returns whether it passed and callers skip the checks that depend on it.
+ */
+abstract class NodeChecker {
+  static final NodeChecker EAGER =
+      new NodeChecker() {
+        @Override
+        void fail(Kind kind, String message) {
+          switch (kind) {
+            case NULL:
+              throw new NullPointerException(message);
+            case TYPE:
+              throw new TypeMismatchException(message);
+            default:
+              throw new IllegalStateException(message);
+          }
+        }
+      };
+
+  enum Kind {
+    STATE,
+    NULL,
+    TYPE
+  }
+
+  abstract void fail(Kind kind, String message);
+
+  static Collecting collecting(String location) {
+    return new Collecting(location);
+  }
+
+  boolean checkState(boolean condition, String message) {
+    if (!condition) {
+      fail(Kind.STATE, message);
+    }
+    return condition;
+  }
+
+  boolean checkState(boolean condition, String messageTemplate, Object arg) {
+    if (!condition) {
+      fail(Kind.STATE, String.format(messageTemplate, arg));
+    }
+    return condition;
+  }
+
+  boolean checkNotNull(@Nullable Object reference, String message) {
+    if (reference == null) {
+      fail(Kind.NULL, message);
+    }
+    return reference != null;
+  }
+
+  boolean checkTypes(boolean condition, String messageTemplate, Object... args) {
+    if (!condition) {
+      fail(Kind.TYPE, String.format(messageTemplate, args));
+    }
+    return condition;
+  }
+
+  static final class Collecting extends NodeChecker {
+    private final String location;
+    private final List<String> violations = new ArrayList<>();
+
+    private Collecting(String location) {
+      this.location = location;
+    }
+
+    @Override
+    void fail(Kind kind, String message) {
+      violations.add(location.isEmpty() ? message : String.format("%s: %s", location, message));
+    }
+
+    List<String> violations() {
+      return violations;
+    }
+  }
+}
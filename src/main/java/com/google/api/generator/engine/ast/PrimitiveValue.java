@@ -43,7 +43,7 @@ public abstract class PrimitiveValue implements Value {
     abstract PrimitiveValue autoBuild();
 
     public PrimitiveValue build() throws TypeMismatchException {
-      // TODO(unsupported): byte, short, char, array initialization.
+      // TODO(unsupported): array initialization.
       PrimitiveValue primitiveValue = autoBuild();
       TypeNode type = primitiveValue.type();
       String value = primitiveValue.value();
@@ -56,6 +56,12 @@ public abstract class PrimitiveValue implements Value {
 
     private static boolean typeMatchesValue(TypeNode type, String value) {
       switch (type.typeKind()) {
+        case BYTE:
+          return Literal.isByteLiteral(value);
+        case SHORT:
+          return Literal.isShortLiteral(value);
+        case CHAR:
+          return Literal.isCharLiteral(value);
         case INT:
           return Literal.isIntegerLiteral(value);
         case LONG:
@@ -67,9 +73,6 @@ public abstract class PrimitiveValue implements Value {
         case BOOLEAN:
           return Literal.isBooleanLiteral(value);
         case OBJECT: // Fall through.
-        case BYTE: // Fall through.
-        case CHAR: // Fall through.
-        case SHORT: // Fall through.
         default:
       }
       return false;
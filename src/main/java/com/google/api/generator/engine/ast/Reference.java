@@ -14,62 +14,69 @@
 
 package com.google.api.generator.engine.ast;
 
-import com.google.auto.value.AutoValue;
-import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 
-@AutoValue
+/**
+ * A type that generated code refers to. {@link ConcreteReference}s wrap a class loaded in the
+ * generator, while {@link VaporReference}s only describe a type by name, so they can refer to types
+ * that are not on the generator's classpath, such as those generated from protos.
+ */
 public abstract class Reference {
-  public abstract Class clazz();
-
   public abstract List<Reference> generics();
 
-  public static Reference withClazz(Class clazz) {
-    return builder().setClazz(clazz).build();
-  }
+  /** The simple name, e.g. Entry for java.util.Map.Entry. */
+  public abstract String simpleName();
 
-  public static Builder builder() {
-    return new AutoValue_Reference.Builder().setGenerics(Collections.emptyList());
-  }
+  public abstract String pakkage();
 
-  public String name() {
-    StringBuilder sb = new StringBuilder();
-    sb.append(clazz().getSimpleName());
-    if (!generics().isEmpty()) {
-      sb.append("<");
-      for (int i = 0; i < generics().size(); i++) {
-        Reference r = generics().get(i);
-        sb.append(r.name());
-        if (i < generics().size() - 1) {
-          sb.append(", ");
-        }
-      }
-      sb.append(">");
-    }
-    return sb.toString();
-  }
+  /**
+   * The names of the classes enclosing this one, relative to the package, e.g. Map for
+   * java.util.Map.Entry. Null for top-level classes.
+   */
+  @Nullable
+  public abstract String enclosingClassName();
 
-  @Override
-  public boolean equals(Object o) {
-    if (!(o instanceof Reference)) {
-      return false;
-    }
+  /** The simple name with generics, as written in code, e.g. {@code Entry<String, Integer>}. */
+  public abstract String name();
 
-    Reference ref = (Reference) o;
-    return clazz().equals(ref.clazz()) && generics().equals(ref.generics());
+  /** The canonical name, without generics, e.g. java.util.Map.Entry. */
+  public String fullName() {
+    StringBuilder sb = new StringBuilder(pakkage()).append('.');
+    if (enclosingClassName() != null) {
+      sb.append(enclosingClassName()).append('.');
+    }
+    return sb.append(simpleName()).toString();
   }
 
-  @Override
-  public int hashCode() {
-    return 17 * clazz().hashCode() + 31 * generics().hashCode();
+  public boolean isFromPackage(String pkg) {
+    return pakkage().equals(pkg);
   }
 
-  @AutoValue.Builder
-  public abstract static class Builder {
-    public abstract Builder setClazz(Class clazz);
+  /** Whether a value of the other type can be assigned to this type, ignoring generics. */
+  public boolean isAssignableFrom(Reference other) {
+    return TypeHierarchy.getDefault().isSubtype(other, this);
+  }
 
-    public abstract Builder setGenerics(List<Reference> clazzes);
+  public static ConcreteReference withClazz(Class clazz) {
+    return ConcreteReference.withClazz(clazz);
+  }
 
-    public abstract Reference build();
+  static String nameWithGenerics(String simpleName, List<Reference> generics) {
+    if (generics.isEmpty()) {
+      return simpleName;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(simpleName);
+    sb.append("<");
+    for (int i = 0; i < generics.size(); i++) {
+      Reference r = generics.get(i);
+      sb.append(r.name());
+      if (i < generics.size() - 1) {
+        sb.append(", ");
+      }
+    }
+    sb.append(">");
+    return sb.toString();
   }
 }
@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.Collections;
 import java.util.List;
@@ -42,6 +41,21 @@ public abstract class TryCatchStatement implements Statement {
     visitor.visit(this);
   }
 
+  static void validate(TryCatchStatement tryCatchStatement, NodeChecker checker) {
+    if (tryCatchStatement.isSampleCode()
+        || !checker.checkState(
+            tryCatchStatement.catchVariableExpr() != null,
+            "Catch variable expression must be set for real, non-sample try-catch blocks.")) {
+      return;
+    }
+    checker.checkState(
+        tryCatchStatement.catchVariableExpr().isDecl(),
+        "Catch variable expression must be a declaration");
+    checker.checkState(
+        TypeNode.isExceptionType(tryCatchStatement.catchVariableExpr().variable().type()),
+        "Catch variable must be an Exception object reference");
+  }
+
   public static Builder builder() {
     return new AutoValue_TryCatchStatement.Builder()
         .setIsSampleCode(false)
@@ -64,18 +78,9 @@ public abstract class TryCatchStatement implements Statement {
 
     public TryCatchStatement build() {
       TryCatchStatement tryCatchStatement = autoBuild();
-      if (!tryCatchStatement.isSampleCode()) {
-        Preconditions.checkState(
-            tryCatchStatement.catchVariableExpr() != null,
-            "Catch variable expression must be set for real, non-sample try-catch blocks.");
-        Preconditions.checkState(
-            tryCatchStatement.catchVariableExpr().isDecl(),
-            "Catch variable expression must be a declaration");
-        Preconditions.checkState(
-            TypeNode.isExceptionType(tryCatchStatement.catchVariableExpr().variable().type()),
-            "Catch variable must be an Exception object reference");
+      if (AstValidator.checksEagerly()) {
+        validate(tryCatchStatement, NodeChecker.EAGER);
       }
-
       return tryCatchStatement;
     }
   }
@@ -0,0 +1,134 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Answers whether one type is a subtype of another, ignoring generics.
+ *
+ * <p>Subtyping between {@link ConcreteReference}s is decided by reflection on their classes. A
+ * {@link VaporReference} is a subtype of itself and, transitively, of its declared supertypes. Only
+ * these walks are cached, per erased vapor type. The cache holds its keys weakly, so it does not
+ * keep interned references alive.
+ */
+public final class TypeHierarchy {
+  private static final long MAX_CACHED_TYPES = 1 << 12;
+  private static final String OBJECT_NAME = Object.class.getName();
+
+  private static final TypeHierarchy DEFAULT = new TypeHierarchy(MAX_CACHED_TYPES);
+
+  private final Cache<VaporReference, Supertypes> vaporSupertypes;
+
+  @VisibleForTesting
+  TypeHierarchy(long maxCachedTypes) {
+    vaporSupertypes =
+        CacheBuilder.newBuilder().weakKeys().maximumSize(maxCachedTypes).recordStats().build();
+  }
+
+  /** Returns the process-wide hierarchy used by the AST. */
+  public static TypeHierarchy getDefault() {
+    return DEFAULT;
+  }
+
+  public boolean isSubtype(Reference subtype, Reference supertype) {
+    if (subtype == supertype
+        || supertype.fullName().equals(OBJECT_NAME)
+        || supertype.fullName().equals(subtype.fullName())) {
+      return true;
+    }
+    if (subtype instanceof ConcreteReference) {
+      // Loaded classes cannot extend types that are only known by name.
+      return supertype instanceof ConcreteReference
+          && ((ConcreteReference) supertype)
+              .clazz()
+              .isAssignableFrom(((ConcreteReference) subtype).clazz());
+    }
+    Supertypes supertypes = supertypesOf((VaporReference) subtype);
+    if (supertype instanceof VaporReference) {
+      return supertypes.vaporNames().contains(supertype.fullName());
+    }
+    Class<?> superclazz = ((ConcreteReference) supertype).clazz();
+    for (Class<?> clazz : supertypes.classes()) {
+      if (superclazz.isAssignableFrom(clazz)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the hit and miss counts of the cached vapor supertype walks. */
+  public CacheStats stats() {
+    return vaporSupertypes.stats();
+  }
+
+  private Supertypes supertypesOf(VaporReference reference) {
+    VaporReference erased = erase(reference);
+    try {
+      return vaporSupertypes.get(erased, () -> computeSupertypes(erased));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  private Supertypes computeSupertypes(VaporReference reference) {
+    ImmutableSet.Builder<String> vaporNames = ImmutableSet.builder();
+    ImmutableSet.Builder<Class<?>> classes = ImmutableSet.builder();
+    // Declared supertypes are built before the types declaring them, so they cannot form cycles.
+    for (Reference declaredSupertype : reference.supertypes()) {
+      if (declaredSupertype instanceof ConcreteReference) {
+        classes.add(((ConcreteReference) declaredSupertype).clazz());
+        continue;
+      }
+      Supertypes inherited = supertypesOf((VaporReference) declaredSupertype);
+      vaporNames.add(declaredSupertype.fullName()).addAll(inherited.vaporNames());
+      classes.addAll(inherited.classes());
+    }
+    return Supertypes.create(vaporNames.build(), classes.build());
+  }
+
+  private static VaporReference erase(VaporReference reference) {
+    if (reference.generics().isEmpty()) {
+      return reference;
+    }
+    return VaporReference.builder()
+        .setPakkage(reference.pakkage())
+        .setEnclosingClassName(reference.enclosingClassName())
+        .setSimpleName(reference.simpleName())
+        .setSupertypes(reference.supertypes())
+        .build();
+  }
+
+  /** The transitive supertypes of a vapor type, held by name and class rather than reference. */
+  @AutoValue
+  abstract static class Supertypes {
+    abstract ImmutableSet<String> vaporNames();
+
+    abstract ImmutableSet<Class<?>> classes();
+
+    static Supertypes create(ImmutableSet<String> vaporNames, ImmutableSet<Class<?>> classes) {
+      return new AutoValue_TypeHierarchy_Supertypes(vaporNames, classes);
+    }
+  }
+}
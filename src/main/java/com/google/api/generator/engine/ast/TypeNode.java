@@ -15,7 +15,10 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.util.Objects;
 import javax.annotation.Nullable;
 
@@ -34,6 +37,10 @@ public abstract class TypeNode implements AstNode {
     VOID
   }
 
+  // Structurally equal types are canonicalized to one instance, which is dropped once it is no
+  // longer used.
+  private static final Interner<TypeNode> INTERNER = Interners.newWeakInterner();
+
   public static final TypeNode VOID = builder().setTypeKind(TypeKind.VOID).build();
   public static final TypeNode INT = builder().setTypeKind(TypeKind.INT).build();
   public static final TypeNode BOOLEAN = builder().setTypeKind(TypeKind.BOOLEAN).build();
@@ -66,7 +73,11 @@ public abstract class TypeNode implements AstNode {
 
     public abstract Builder setReference(Reference reference);
 
-    public abstract TypeNode build();
+    abstract TypeNode autoBuild();
+
+    public TypeNode build() {
+      return INTERNER.intern(autoBuild());
+    }
   }
 
   // TODO(miraleung): More type creation helpers to come...
@@ -80,7 +91,8 @@ public abstract class TypeNode implements AstNode {
   }
 
   public static boolean isExceptionType(TypeNode type) {
-    return isReferenceType(type) && Exception.class.isAssignableFrom(type.reference().clazz());
+    return isReferenceType(type)
+        && Reference.withClazz(Exception.class).isAssignableFrom(type.reference());
   }
 
   public static boolean isReferenceType(TypeNode type) {
@@ -99,6 +111,9 @@ public abstract class TypeNode implements AstNode {
   // Java overrides.
   @Override
   public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
     if (!(o instanceof TypeNode)) {
       return false;
     }
@@ -109,6 +124,7 @@ public abstract class TypeNode implements AstNode {
         && Objects.equals(reference(), type.reference());
   }
 
+  @Memoized
   @Override
   public int hashCode() {
     int hash = 17 * typeKind().hashCode() + 19 * (isArray() ? 1 : 3);
@@ -0,0 +1,103 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A reference to a class by name, which does not need to be loaded, or even exist yet, when code
+ * referring to it is generated.
+ */
+@AutoValue
+public abstract class VaporReference extends Reference {
+  private static final Interner<VaporReference> INTERNER = Interners.newWeakInterner();
+
+  @Override
+  public abstract List<Reference> generics();
+
+  @Override
+  public abstract String simpleName();
+
+  @Override
+  public abstract String pakkage();
+
+  @Nullable
+  @Override
+  public abstract String enclosingClassName();
+
+  /** The declared supertypes, such as the message and interfaces a generated class extends. */
+  public abstract List<Reference> supertypes();
+
+  public static Builder builder() {
+    return new AutoValue_VaporReference.Builder()
+        .setGenerics(Collections.emptyList())
+        .setSupertypes(Collections.emptyList());
+  }
+
+  @Memoized
+  @Override
+  public String name() {
+    return nameWithGenerics(simpleName(), generics());
+  }
+
+  @Memoized
+  @Override
+  public String fullName() {
+    return super.fullName();
+  }
+
+  @Memoized
+  @Override
+  public abstract int hashCode();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setSimpleName(String simpleName);
+
+    public abstract Builder setPakkage(String pakkage);
+
+    public abstract Builder setEnclosingClassName(String enclosingClassName);
+
+    public abstract Builder setGenerics(List<Reference> clazzes);
+
+    public abstract Builder setSupertypes(List<Reference> supertypes);
+
+    abstract List<Reference> generics();
+
+    abstract List<Reference> supertypes();
+
+    abstract VaporReference autoBuild();
+
+    public VaporReference build() {
+      setGenerics(ImmutableList.copyOf(generics()));
+      setSupertypes(ImmutableList.copyOf(supertypes()));
+      VaporReference reference = autoBuild();
+      Preconditions.checkState(
+          !reference.simpleName().isEmpty() && reference.simpleName().indexOf('.') < 0,
+          "Invalid simple name %s",
+          reference.simpleName());
+      Preconditions.checkState(!reference.pakkage().isEmpty(), "Package cannot be empty");
+      return INTERNER.intern(reference);
+    }
+  }
+}
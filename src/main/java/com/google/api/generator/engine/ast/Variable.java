@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 
 @AutoValue
 public abstract class Variable {
@@ -25,6 +24,11 @@ public abstract class Variable {
 
   abstract String name();
 
+  static void validate(Variable variable, NodeChecker checker) {
+    checker.checkState(
+        !variable.type().typeKind().equals(TypeNode.TypeKind.VOID), "Variables cannot be void");
+  }
+
   public static Builder builder() {
     return new AutoValue_Variable.Builder();
   }
@@ -46,7 +50,9 @@ public abstract class Variable {
       setIdentifier(identifier);
 
       Variable variable = autoBuild();
-      Preconditions.checkState(!variable.type().typeKind().equals(TypeNode.TypeKind.VOID));
+      if (AstValidator.checksEagerly()) {
+        validate(variable, NodeChecker.EAGER);
+      }
       return variable;
     }
   }
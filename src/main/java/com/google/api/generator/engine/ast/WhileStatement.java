@@ -15,7 +15,6 @@
 package com.google.api.generator.engine.ast;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
 
@@ -26,6 +25,12 @@ public abstract class WhileStatement implements Statement {
 
   public abstract ImmutableList<Statement> body();
 
+  static void validate(WhileStatement whileStatement, NodeChecker checker) {
+    checker.checkState(
+        whileStatement.conditionExpr().type().equals(TypeNode.BOOLEAN),
+        "While condition must be a boolean-typed expression");
+  }
+
   public static Builder builder() {
     return new AutoValue_WhileStatement.Builder();
   }
@@ -40,9 +45,9 @@ public abstract class WhileStatement implements Statement {
 
     public WhileStatement build() {
       WhileStatement whileStatement = autoBuild();
-      Preconditions.checkState(
-          whileStatement.conditionExpr().type().equals(TypeNode.BOOLEAN),
-          "While condition must be a boolean-typed expression");
+      if (AstValidator.checksEagerly()) {
+        validate(whileStatement, NodeChecker.EAGER);
+      }
       return whileStatement;
     }
   }
@@ -0,0 +1,76 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.lexicon;
+
+public class Identifier {
+  public enum Violation {
+    NONE,
+    EMPTY,
+    STARTS_WITH_DIGIT,
+    LITERAL,
+    NON_ALPHANUMERIC_CHARACTER,
+    KEYWORD
+  }
+
+  // Invalid symbols, operators and separators. Characters outside ASCII are allowed.
+  private static final String DISALLOWED_CHARACTERS = "#`~'\"\\,$+-*/%=!&|<>?:^[]{}().;";
+  private static final boolean[] DISALLOWED = new boolean[128];
+
+  static {
+    for (int i = 0; i < DISALLOWED_CHARACTERS.length(); i++) {
+      DISALLOWED[DISALLOWED_CHARACTERS.charAt(i)] = true;
+    }
+  }
+
+  /**
+   * Checks whether a name can be used as an identifier in a single pass over its characters. When
+   * a name has several violations, the first of empty, leading digit, literal, non-alphanumeric
+   * character and keyword is reported.
+   */
+  public static Violation check(String name) {
+    int length = name.length();
+    if (length == 0) {
+      return Violation.EMPTY;
+    }
+    char first = name.charAt(0);
+    if (first >= '0' && first <= '9') {
+      return Violation.STARTS_WITH_DIGIT;
+    }
+
+    // Keywords and non-numeric literals consist of lowercase letters only.
+    boolean allLowercase = true;
+    boolean disallowed = false;
+    for (int i = 0; i < length; i++) {
+      char c = name.charAt(i);
+      if (c < 128 && DISALLOWED[c]) {
+        disallowed = true;
+        break;
+      }
+      allLowercase &= c >= 'a' && c <= 'z';
+    }
+
+    // Names cannot start with a digit, so numeric literals were already ruled out.
+    if (allLowercase && (Literal.isBooleanLiteral(name) || Literal.isNullLiteral(name))) {
+      return Violation.LITERAL;
+    }
+    if (disallowed) {
+      return Violation.NON_ALPHANUMERIC_CHARACTER;
+    }
+    if (allLowercase && Keyword.isKeyword(name)) {
+      return Violation.KEYWORD;
+    }
+    return Violation.NONE;
+  }
+}
@@ -14,11 +14,11 @@
 
 package com.google.api.generator.engine.lexicon;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 public class Keyword {
-  private static final ImmutableList<String> KEYWORDS =
-      ImmutableList.of(
+  private static final ImmutableSet<String> KEYWORDS =
+      ImmutableSet.of(
           "abstract",
           "continue",
           "for",
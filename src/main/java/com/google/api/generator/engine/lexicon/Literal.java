@@ -14,39 +14,126 @@
 
 package com.google.api.generator.engine.lexicon;
 
-import java.util.regex.Pattern;
-
 // TODO(miraleung): Refactor this out into int, bool, null, float, string literal classes.
 public class Literal {
   private static final String BOOLEAN_TRUE = "true";
   private static final String BOOLEAN_FALSE = "false";
   private static final String NULL_VALUE = "null";
 
-  private static final Pattern INTEGER_PATTERN = Pattern.compile("^[0-9]+$");
-  private static final Pattern LONG_PATTERN = Pattern.compile("^[0-9]+[Ll]?$");
-  private static final Pattern FLOAT_PATTERN =
-      Pattern.compile("^[0-9]+([fF]|(\\.(([0-9]+[fF])|[fF])))?$");
-  private static final Pattern DOUBLE_PATTERN =
-      Pattern.compile("^[0-9]+(\\.[0-9]+)?(\\.?[eE]\\-?[0-9]+)$");
+  // The numeric types a token is a literal of, as a bitmask.
+  private static final int INTEGER = 1;
+  private static final int LONG = 1 << 1;
+  private static final int FLOAT = 1 << 2;
+  private static final int DOUBLE = 1 << 3;
+
+  // Octal int and long literals may use every bit, as in 037777777777 == -1. These are unsigned.
+  private static final long MAX_OCTAL_INT = 0xFFFFFFFFL;
+  private static final long MAX_OCTAL_LONG = -1L;
+
+  // Character classes of the numeric literal automaton.
+  private static final int DIGIT = 0;
+  private static final int DOT = 1;
+  private static final int FLOAT_SUFFIX = 2;
+  private static final int LONG_SUFFIX = 3;
+  private static final int EXPONENT = 4;
+  private static final int MINUS = 5;
+  private static final int OTHER = 6;
+
+  // States of the numeric literal automaton. The accepted language is the union of
+  //   integer: [0-9]+
+  //   long:    [0-9]+[Ll]?
+  //   float:   [0-9]+([fF]|(\.(([0-9]+[fF])|[fF])))?
+  //   double:  float, or [0-9]+(\.[0-9]+)?(\.?[eE]\-?[0-9]+)
+  private static final int REJECT = 0;
+  private static final int START = 1;
+  private static final int WHOLE = 2; // 12
+  private static final int LONG_END = 3; // 12L
+  private static final int FLOAT_END = 4; // 12f, 12.f, 12.5f
+  private static final int DOT_AFTER_WHOLE = 5; // 12.
+  private static final int FRACTION = 6; // 12.5
+  private static final int DOT_AFTER_FRACTION = 7; // 12.5.
+  private static final int EXPONENT_START = 8; // 12e, 12.e, 12.5e, 12.5.e
+  private static final int EXPONENT_MINUS = 9; // 12e-
+  private static final int EXPONENT_DIGITS = 10; // 12e-3
+
+  private static final int[][] TRANSITIONS = {
+    // DIGIT, DOT, FLOAT_SUFFIX, LONG_SUFFIX, EXPONENT, MINUS, OTHER
+    /* REJECT */ {REJECT, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+    /* START */ {WHOLE, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+    /* WHOLE */ {WHOLE, DOT_AFTER_WHOLE, FLOAT_END, LONG_END, EXPONENT_START, REJECT, REJECT},
+    /* LONG_END */ {REJECT, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+    /* FLOAT_END */ {REJECT, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+    /* DOT_AFTER_WHOLE */ {FRACTION, REJECT, FLOAT_END, REJECT, EXPONENT_START, REJECT, REJECT},
+    /* FRACTION */
+    {FRACTION, DOT_AFTER_FRACTION, FLOAT_END, REJECT, EXPONENT_START, REJECT, REJECT},
+    /* DOT_AFTER_FRACTION */ {REJECT, REJECT, REJECT, REJECT, EXPONENT_START, REJECT, REJECT},
+    /* EXPONENT_START */ {EXPONENT_DIGITS, REJECT, REJECT, REJECT, REJECT, EXPONENT_MINUS, REJECT},
+    /* EXPONENT_MINUS */ {EXPONENT_DIGITS, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+    /* EXPONENT_DIGITS */ {EXPONENT_DIGITS, REJECT, REJECT, REJECT, REJECT, REJECT, REJECT},
+  };
+
+  private static final int[] ACCEPTED_TYPES = {
+    /* REJECT */ 0,
+    /* START */ 0,
+    /* WHOLE */ INTEGER | LONG | FLOAT | DOUBLE,
+    /* LONG_END */ LONG,
+    /* FLOAT_END */ FLOAT | DOUBLE,
+    /* DOT_AFTER_WHOLE */ 0,
+    /* FRACTION */ 0,
+    /* DOT_AFTER_FRACTION */ 0,
+    /* EXPONENT_START */ 0,
+    /* EXPONENT_MINUS */ 0,
+    /* EXPONENT_DIGITS */ DOUBLE,
+  };
 
   public static boolean isBooleanLiteral(String str) {
     return str.equals(BOOLEAN_TRUE) || str.equals(BOOLEAN_FALSE);
   }
 
   public static boolean isIntegerLiteral(String str) {
-    return INTEGER_PATTERN.matcher(str).matches();
+    return (numericTypes(str) & INTEGER) != 0
+        && isAtMost(str, str.length(), Integer.MAX_VALUE, MAX_OCTAL_INT);
   }
 
   public static boolean isLongLiteral(String str) {
-    return LONG_PATTERN.matcher(str).matches();
+    if ((numericTypes(str) & LONG) == 0) {
+      return false;
+    }
+    int end = str.length();
+    if (characterClass(str.charAt(end - 1)) == LONG_SUFFIX) {
+      end--;
+    }
+    return isAtMost(str, end, Long.MAX_VALUE, MAX_OCTAL_LONG);
   }
 
   public static boolean isFloatLiteral(String str) {
-    return INTEGER_PATTERN.matcher(str).matches() || FLOAT_PATTERN.matcher(str).matches();
+    return (numericTypes(str) & FLOAT) != 0;
   }
 
   public static boolean isDoubleLiteral(String str) {
-    return isFloatLiteral(str) || DOUBLE_PATTERN.matcher(str).matches();
+    return (numericTypes(str) & DOUBLE) != 0;
+  }
+
+  public static boolean isByteLiteral(String str) {
+    return isIntegerLiteral(str) && isAtMost(str, str.length(), Byte.MAX_VALUE, Byte.MAX_VALUE);
+  }
+
+  public static boolean isShortLiteral(String str) {
+    return isIntegerLiteral(str)
+        && isAtMost(str, str.length(), Short.MAX_VALUE, Short.MAX_VALUE);
+  }
+
+  /** Returns whether the string is a quoted character, such as 'a', '\n', '\'' or '\101'. */
+  public static boolean isCharLiteral(String str) {
+    int length = str.length();
+    if (length < 3 || str.charAt(0) != '\'' || str.charAt(length - 1) != '\'') {
+      return false;
+    }
+    char c = str.charAt(1);
+    if (c != '\\') {
+      return length == 3 && c != '\'' && c != '\n' && c != '\r';
+    }
+    return isEscapeSequence(str, 2, length - 1);
   }
 
   public static boolean isNullLiteral(String str) {
@@ -54,11 +141,121 @@ public class Literal {
   }
 
   public static boolean isLiteral(String str) {
-    return isBooleanLiteral(str)
-        || isIntegerLiteral(str)
-        || isLongLiteral(str)
-        || isFloatLiteral(str)
-        || isDoubleLiteral(str)
-        || isNullLiteral(str);
+    return isBooleanLiteral(str) || isNumericLiteral(str) || isNullLiteral(str);
+  }
+
+  // Whole numbers are floating point literals even when they are out of int and long range, so
+  // only a long suffix needs the range check.
+  private static boolean isNumericLiteral(String str) {
+    int types = numericTypes(str);
+    return (types & (FLOAT | DOUBLE)) != 0 || ((types & LONG) != 0 && isLongLiteral(str));
+  }
+
+  // Runs the numeric literal automaton over the string, and returns the bitmask of the numeric
+  // types it is a literal of.
+  private static int numericTypes(String str) {
+    int state = START;
+    for (int i = 0; i < str.length() && state != REJECT; i++) {
+      state = TRANSITIONS[state][characterClass(str.charAt(i))];
+    }
+    return ACCEPTED_TYPES[state];
+  }
+
+  private static int characterClass(char c) {
+    switch (c) {
+      case '0': // Fall through.
+      case '1': // Fall through.
+      case '2': // Fall through.
+      case '3': // Fall through.
+      case '4': // Fall through.
+      case '5': // Fall through.
+      case '6': // Fall through.
+      case '7': // Fall through.
+      case '8': // Fall through.
+      case '9':
+        return DIGIT;
+      case '.':
+        return DOT;
+      case 'f': // Fall through.
+      case 'F':
+        return FLOAT_SUFFIX;
+      case 'l': // Fall through.
+      case 'L':
+        return LONG_SUFFIX;
+      case 'e': // Fall through.
+      case 'E':
+        return EXPONENT;
+      case '-':
+        return MINUS;
+      default:
+        return OTHER;
+    }
+  }
+
+  // Whether the digits in str[0, end) are a value of at most the decimal or, for digits with a
+  // leading zero as in Java source, the unsigned octal maximum, without parsing them.
+  private static boolean isAtMost(String str, int end, long decimalMax, long octalMax) {
+    boolean isOctal = end > 1 && str.charAt(0) == '0';
+    int radix = isOctal ? 8 : 10;
+    long max = isOctal ? octalMax : decimalMax;
+    long value = 0;
+    for (int i = 0; i < end; i++) {
+      int digit = str.charAt(i) - '0';
+      if (digit >= radix
+          || Long.compareUnsigned(value, Long.divideUnsigned(max - digit, radix)) > 0) {
+        return false;
+      }
+      value = value * radix + digit;
+    }
+    return true;
+  }
+
+  // Whether str[start, end) is the part of an escape sequence after the backslash.
+  private static boolean isEscapeSequence(String str, int start, int end) {
+    int length = end - start;
+    char c = str.charAt(start);
+    switch (c) {
+      case 'b': // Fall through.
+      case 't': // Fall through.
+      case 'n': // Fall through.
+      case 'f': // Fall through.
+      case 'r': // Fall through.
+      case '"': // Fall through.
+      case '\'': // Fall through.
+      case '\\':
+        return length == 1;
+      case 'u':
+        // Unicode escapes may have any number of u's.
+        int hexStart = start;
+        while (hexStart < end && str.charAt(hexStart) == 'u') {
+          hexStart++;
+        }
+        if (end - hexStart != 4) {
+          return false;
+        }
+        int value = 0;
+        for (int i = hexStart; i < end; i++) {
+          int digit = Character.digit(str.charAt(i), 16);
+          if (digit < 0) {
+            return false;
+          }
+          value = value * 16 + digit;
+        }
+        // Unicode escapes are translated before lexing, so these would end or break the literal.
+        return value != '\'' && value != '\\' && value != '\n' && value != '\r';
+      default:
+        // Octal escapes, from \0 to \377.
+        int maxLength = c >= '0' && c <= '3' ? 3 : 2;
+        if (length > maxLength) {
+          return false;
+        }
+        for (int i = start; i < end; i++) {
+          char digit = str.charAt(i);
+          if (digit < '0' || digit > '7') {
+            return false;
+          }
+        }
+        return true;
+    }
   }
 }
@@ -0,0 +1,43 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.writer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Flight Recorder event for rendering a single ClassDefinition, including its nested classes. */
+@Name("com.google.api.generator.ClassRender")
+@Label("Class Render")
+@Description("Rendering a class definition to Java source")
+@Category({"GAPIC Generator", "Writer"})
+final class ClassRenderEvent extends Event {
+  @Label("Class Name")
+  String className;
+
+  @Label("Nested")
+  boolean nested;
+
+  @Label("Method Count")
+  int methodCount;
+
+  @Label("Statement Count")
+  int statementCount;
+
+  @Label("Characters Emitted")
+  long charactersEmitted;
+}
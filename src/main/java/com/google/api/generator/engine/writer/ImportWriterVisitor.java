@@ -16,9 +16,10 @@ package com.google.api.generator.engine.writer;
 
 import com.google.api.generator.engine.ast.AnnotationNode;
 import com.google.api.generator.engine.ast.AssignmentExpr;
+import com.google.api.generator.engine.ast.AstNode;
 import com.google.api.generator.engine.ast.AstNodeVisitor;
+import com.google.api.generator.engine.ast.AstTraversal;
 import com.google.api.generator.engine.ast.ClassDefinition;
-import com.google.api.generator.engine.ast.Expr;
 import com.google.api.generator.engine.ast.ExprStatement;
 import com.google.api.generator.engine.ast.ForStatement;
 import com.google.api.generator.engine.ast.IdentifierNode;
@@ -27,20 +28,20 @@ import com.google.api.generator.engine.ast.MethodDefinition;
 import com.google.api.generator.engine.ast.MethodInvocationExpr;
 import com.google.api.generator.engine.ast.Reference;
 import com.google.api.generator.engine.ast.ScopeNode;
-import com.google.api.generator.engine.ast.Statement;
 import com.google.api.generator.engine.ast.TryCatchStatement;
 import com.google.api.generator.engine.ast.TypeNode;
 import com.google.api.generator.engine.ast.ValueExpr;
 import com.google.api.generator.engine.ast.VariableExpr;
 import com.google.api.generator.engine.ast.WhileStatement;
 import com.google.common.base.Preconditions;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
-public class ImportWriterVisitor implements AstNodeVisitor {
+public class ImportWriterVisitor implements AstNodeVisitor, AstTraversal.Listener {
   private static final String NEWLINE = "\n";
   private static final String PKG_JAVA_LANG = "java.lang";
 
@@ -48,6 +49,8 @@ public class ImportWriterVisitor implements AstNodeVisitor {
   private final Set<String> imports = new TreeSet<>();
 
   private final String currentPackage;
+  private final NodeImports nodeImports = new NodeImports();
+  private final Deque<ImportCollectionEvent> classEvents = new ArrayDeque<>();
 
   public ImportWriterVisitor(String currentPackage) {
     this.currentPackage = currentPackage;
@@ -70,182 +73,198 @@ public class ImportWriterVisitor implements AstNodeVisitor {
     return sb.toString();
   }
 
+  /**
+   * Collects the imports of each node it enters. This lets import collection share a walk with
+   * other listeners through {@link AstTraversal#fuse}.
+   */
   @Override
-  public void visit(IdentifierNode identifier) {
-    // Nothing to do.
+  public boolean enter(AstNode node) {
+    node.accept(nodeImports);
+    return true;
   }
 
   @Override
-  public void visit(TypeNode type) {
-    if (!TypeNode.isReferenceType(type)) {
+  public void exit(AstNode node) {
+    if (!(node instanceof ClassDefinition)) {
       return;
     }
+    // The counts were set to the sizes of the shared sets when the class was entered.
+    ImportCollectionEvent event = classEvents.pop();
+    if (event.shouldCommit()) {
+      event.className = ((ClassDefinition) node).classIdentifier().name();
+      event.importsAdded = imports.size() - event.importsAdded;
+      event.staticImportsAdded = staticImports.size() - event.staticImportsAdded;
+      event.commit();
+    }
+  }
 
-    List<Reference> refs = new ArrayList<>(type.reference().generics());
-    refs.add(type.reference());
-    references(refs);
+  // Leaves have no children to walk, so their imports are collected directly.
+  @Override
+  public void visit(IdentifierNode identifier) {
+    identifier.accept(nodeImports);
+  }
+
+  @Override
+  public void visit(TypeNode type) {
+    type.accept(nodeImports);
   }
 
   @Override
   public void visit(ScopeNode scope) {
-    // Nothing to do.
+    scope.accept(nodeImports);
   }
 
   @Override
   public void visit(AnnotationNode annotation) {
-    annotation.type().accept(this);
+    AstTraversal.walk(annotation, this);
   }
 
   /** =============================== EXPRESSIONS =============================== */
   @Override
   public void visit(ValueExpr valueExpr) {
-    valueExpr.type().accept(this);
+    AstTraversal.walk(valueExpr, this);
   }
 
   @Override
   public void visit(VariableExpr variableExpr) {
-    variableExpr.variable().type().accept(this);
+    AstTraversal.walk(variableExpr, this);
   }
 
   @Override
   public void visit(AssignmentExpr assignmentExpr) {
-    assignmentExpr.variableExpr().accept(this);
-    assignmentExpr.valueExpr().accept(this);
+    AstTraversal.walk(assignmentExpr, this);
   }
 
   @Override
   public void visit(MethodInvocationExpr methodInvocationExpr) {
-    methodInvocationExpr.returnType().accept(this);
-    if (methodInvocationExpr.exprReferenceExpr() != null) {
-      methodInvocationExpr.exprReferenceExpr().accept(this);
-    }
-    references(methodInvocationExpr.generics());
-    expressions(methodInvocationExpr.arguments());
+    AstTraversal.walk(methodInvocationExpr, this);
   }
 
   /** =============================== STATEMENTS =============================== */
   @Override
   public void visit(ExprStatement exprStatement) {
-    exprStatement.expression().accept(this);
+    AstTraversal.walk(exprStatement, this);
   }
 
   @Override
   public void visit(IfStatement ifStatement) {
-    ifStatement.conditionExpr().accept(this);
-    statements(ifStatement.body());
-    for (Map.Entry<Expr, List<Statement>> elseIf : ifStatement.elseIfs().entrySet()) {
-      elseIf.getKey().accept(this);
-      statements(elseIf.getValue());
-    }
-    statements(ifStatement.elseBody());
+    AstTraversal.walk(ifStatement, this);
   }
 
   @Override
   public void visit(ForStatement forStatement) {
-    forStatement.localVariableExpr().accept(this);
-    forStatement.collectionExpr().accept(this);
-    statements(forStatement.body());
+    AstTraversal.walk(forStatement, this);
   }
 
   @Override
   public void visit(WhileStatement whileStatement) {
-    whileStatement.conditionExpr().accept(this);
-    statements(whileStatement.body());
+    AstTraversal.walk(whileStatement, this);
   }
 
   @Override
   public void visit(TryCatchStatement tryCatchStatement) {
-    if (tryCatchStatement.tryResourceExpr() != null) {
-      tryCatchStatement.tryResourceExpr().accept(this);
-    }
-
-    statements(tryCatchStatement.tryBody());
-
-    Preconditions.checkState(
-        !tryCatchStatement.isSampleCode() && tryCatchStatement.catchVariableExpr() != null,
-        "Import generation should not be invoked on sample code, but was found when visiting a"
-            + " try-catch block");
-    tryCatchStatement.catchVariableExpr().accept(this);
-    statements(tryCatchStatement.catchBody());
+    AstTraversal.walk(tryCatchStatement, this);
   }
 
   /** =============================== OTHER =============================== */
   @Override
   public void visit(MethodDefinition methodDefinition) {
-    methodDefinition.returnType().accept(this);
-    annotations(methodDefinition.annotations());
-    types(methodDefinition.throwsExceptions());
-    variableExpressions(methodDefinition.arguments());
-    statements(methodDefinition.body());
-    if (methodDefinition.returnExpr() != null) {
-      methodDefinition.returnExpr().accept(this);
-    }
+    AstTraversal.walk(methodDefinition, this);
   }
 
   @Override
   public void visit(ClassDefinition classDefinition) {
-    annotations(classDefinition.annotations());
-    types(classDefinition.implementsTypes());
-    if (classDefinition.extendsType() != null) {
-      classDefinition.extendsType().accept(this);
-    }
-    statements(classDefinition.statements());
-    for (MethodDefinition method : classDefinition.methods()) {
-      method.accept(this);
-    }
-    for (ClassDefinition nestedClass : classDefinition.nestedClasses()) {
-      nestedClass.accept(this);
-    }
+    AstTraversal.walk(classDefinition, this);
   }
 
-  /** =============================== PRIVATE HELPERS =============================== */
-  private void annotations(List<AnnotationNode> annotations) {
-    for (AnnotationNode annotation : annotations) {
-      annotation.accept(this);
+  /**
+   * Adds the imports needed by a single node. Its child nodes, including the types it uses, are
+   * reached by the walk.
+   */
+  private class NodeImports implements AstNodeVisitor {
+    @Override
+    public void visit(IdentifierNode identifier) {}
+
+    @Override
+    public void visit(TypeNode type) {
+      if (!TypeNode.isReferenceType(type)) {
+        return;
+      }
+
+      List<Reference> refs = new ArrayList<>(type.reference().generics());
+      refs.add(type.reference());
+      references(refs);
     }
-  }
 
-  private void expressions(List<Expr> expressions) {
-    for (Expr expr : expressions) {
-      expr.accept(this);
+    @Override
+    public void visit(ScopeNode scope) {}
+
+    @Override
+    public void visit(AnnotationNode annotation) {}
+
+    @Override
+    public void visit(ValueExpr valueExpr) {}
+
+    @Override
+    public void visit(VariableExpr variableExpr) {}
+
+    @Override
+    public void visit(AssignmentExpr assignmentExpr) {}
+
+    @Override
+    public void visit(MethodInvocationExpr methodInvocationExpr) {
+      references(methodInvocationExpr.generics());
     }
-  }
 
-  private void variableExpressions(List<VariableExpr> expressions) {
-    for (VariableExpr expr : expressions) {
-      expr.accept(this);
+    @Override
+    public void visit(ExprStatement exprStatement) {}
+
+    @Override
+    public void visit(IfStatement ifStatement) {}
+
+    @Override
+    public void visit(ForStatement forStatement) {}
+
+    @Override
+    public void visit(WhileStatement whileStatement) {}
+
+    @Override
+    public void visit(TryCatchStatement tryCatchStatement) {
+      Preconditions.checkState(
+          !tryCatchStatement.isSampleCode() && tryCatchStatement.catchVariableExpr() != null,
+          "Import generation should not be invoked on sample code, but was found when visiting a"
+              + " try-catch block");
+    }
+
+    @Override
+    public void visit(MethodDefinition methodDefinition) {}
+
+    @Override
+    public void visit(ClassDefinition classDefinition) {
+      ImportCollectionEvent event = new ImportCollectionEvent();
+      event.importsAdded = imports.size();
+      event.staticImportsAdded = staticImports.size();
+      event.begin();
+      classEvents.push(event);
     }
   }
 
+  /** =============================== PRIVATE HELPERS =============================== */
   private void references(List<Reference> refs) {
     for (Reference ref : refs) {
-      Class clazz = ref.clazz();
       // Don't need to import this.
-      if (clazz.getPackage().getName().equals(PKG_JAVA_LANG)
-          || clazz.getPackage().getName().equals(currentPackage)) {
+      if (ref.isFromPackage(PKG_JAVA_LANG) || ref.isFromPackage(currentPackage)) {
         continue;
       }
 
-      if (clazz.getEnclosingClass() != null) {
+      if (ref.enclosingClassName() != null) {
         // This is a static import.
-        staticImports.add(clazz.getCanonicalName());
+        staticImports.add(ref.fullName());
       } else {
-        imports.add(clazz.getCanonicalName());
+        imports.add(ref.fullName());
       }
 
       references(ref.generics());
     }
   }
-
-  private void statements(List<Statement> statements) {
-    for (Statement statement : statements) {
-      statement.accept(this);
-    }
-  }
-
-  private void types(List<TypeNode> types) {
-    for (TypeNode type : types) {
-      type.accept(this);
-    }
-  }
 }
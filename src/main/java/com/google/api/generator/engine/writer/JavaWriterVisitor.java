@@ -16,6 +16,7 @@ package com.google.api.generator.engine.writer;
 
 import com.google.api.generator.engine.ast.AnnotationNode;
 import com.google.api.generator.engine.ast.AssignmentExpr;
+import com.google.api.generator.engine.ast.AstNode;
 import com.google.api.generator.engine.ast.AstNodeVisitor;
 import com.google.api.generator.engine.ast.ClassDefinition;
 import com.google.api.generator.engine.ast.Expr;
@@ -34,9 +35,19 @@ import com.google.api.generator.engine.ast.ValueExpr;
 import com.google.api.generator.engine.ast.Variable;
 import com.google.api.generator.engine.ast.VariableExpr;
 import com.google.api.generator.engine.ast.WhileStatement;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 
 public class JavaWriterVisitor implements AstNodeVisitor {
   private static final String SPACE = " ";
@@ -71,52 +82,117 @@ public class JavaWriterVisitor implements AstNodeVisitor {
   private static final String TRY = "try";
   private static final String WHILE = "while";
 
-  private final StringBuffer buffer = new StringBuffer();
+  private static final String ARRAY_BRACKETS = "[]";
+  private static final String PACKAGE = "package";
+  private static final String QUOTE = "\"";
 
-  public JavaWriterVisitor() {}
+  private static final Map<TypeKind, String> PRIMITIVE_TYPE_NAMES = new EnumMap<>(TypeKind.class);
+
+  static {
+    for (TypeKind typeKind : TypeKind.values()) {
+      PRIMITIVE_TYPE_NAMES.put(typeKind, typeKind.toString().toLowerCase());
+    }
+  }
+
+  /** How the visitor reaches child nodes. Both modes write the same code. */
+  public enum TraversalMode {
+    RECURSIVE,
+    // Keeps pending output and child nodes on a heap-allocated stack, so that deep trees such as
+    // long chains of method invocations cannot overflow the Java stack.
+    EXPLICIT_STACK
+  }
+
+  // Only set when the visitor writes to its own buffer rather than to a caller-provided sink.
+  @Nullable private final StringBuilder buffer;
+  private final Appendable sink;
+  private final Function<String, ImportWriterVisitor> importWriterVisitorFactory;
+  private long charactersWritten;
+  private TraversalMode traversalMode = TraversalMode.RECURSIVE;
+
+  // Only set in explicit-stack mode, while a node's visit method records its steps.
+  @Nullable private AstNode expandingNode;
+  @Nullable private List<Object> expandingSteps;
+
+  /** Creates a visitor that writes to its own buffer, which is read with {@link #write()}. */
+  public JavaWriterVisitor() {
+    this(ImportWriterVisitor::new);
+  }
+
+  /**
+   * Creates a visitor that streams code to the given sink, such as a {@link java.io.Writer} over
+   * an output file. The visitor does not flush or close the sink. IOExceptions thrown by the sink
+   * are rethrown as {@link UncheckedIOException}s.
+   */
+  public JavaWriterVisitor(Appendable sink) {
+    this(null, sink, ImportWriterVisitor::new);
+  }
+
+  // Creates the import visitor of each top-level class from its package.
+  @VisibleForTesting
+  JavaWriterVisitor(Function<String, ImportWriterVisitor> importWriterVisitorFactory) {
+    this(new StringBuilder(), null, importWriterVisitorFactory);
+  }
+
+  private JavaWriterVisitor(
+      @Nullable StringBuilder buffer,
+      @Nullable Appendable sink,
+      Function<String, ImportWriterVisitor> importWriterVisitorFactory) {
+    this.buffer = buffer;
+    this.sink = buffer == null ? sink : buffer;
+    this.importWriterVisitorFactory = importWriterVisitorFactory;
+  }
+
+  public void setTraversalMode(TraversalMode traversalMode) {
+    this.traversalMode = traversalMode;
+  }
 
   public void clear() {
+    Preconditions.checkState(buffer != null, "Cannot clear a visitor that writes to a sink");
     buffer.setLength(0);
   }
 
   public String write() {
+    Preconditions.checkState(buffer != null, "Cannot read code written to a sink");
     return buffer.toString();
   }
 
   @Override
   public void visit(IdentifierNode identifier) {
-    buffer.append(identifier.name());
+    append(identifier.name());
   }
 
   @Override
   public void visit(TypeNode type) {
-    TypeKind typeKind = type.typeKind();
-    StringBuilder generatedCodeBuilder = new StringBuilder();
     if (type.isPrimitiveType()) {
-      generatedCodeBuilder.append(typeKind.toString().toLowerCase());
+      append(PRIMITIVE_TYPE_NAMES.get(type.typeKind()));
     } else {
       // A null pointer exception will be thrown if reference is null, which is WAI.
-      generatedCodeBuilder.append(type.reference().name());
+      append(type.reference().name());
     }
 
     if (type.isArray()) {
-      generatedCodeBuilder.append("[]");
+      append(ARRAY_BRACKETS);
     }
-
-    buffer.append(generatedCodeBuilder.toString());
   }
 
   @Override
   public void visit(ScopeNode scope) {
-    buffer.append(scope.toString());
+    append(scope.toString());
   }
 
   @Override
   public void visit(AnnotationNode annotation) {
-    buffer.append(AT);
+    if (deferToStack(annotation)) {
+      return;
+    }
+    append(AT);
     annotation.type().accept(this);
     if (annotation.description() != null && !annotation.description().isEmpty()) {
-      buffer.append(String.format("(\"%s\")", annotation.description()));
+      leftParen();
+      append(QUOTE);
+      append(annotation.description());
+      append(QUOTE);
+      rightParen();
     }
     newline();
   }
@@ -124,11 +200,14 @@ public class JavaWriterVisitor implements AstNodeVisitor {
   /** =============================== EXPRESSIONS =============================== */
   @Override
   public void visit(ValueExpr valueExpr) {
-    buffer.append(valueExpr.value().toString());
+    append(valueExpr.value().toString());
   }
 
   @Override
   public void visit(VariableExpr variableExpr) {
+    if (deferToStack(variableExpr)) {
+      return;
+    }
     Variable variable = variableExpr.variable();
     TypeNode type = variable.type();
     ScopeNode scope = variableExpr.scope();
@@ -140,12 +219,12 @@ public class JavaWriterVisitor implements AstNodeVisitor {
       }
 
       if (variableExpr.isStatic()) {
-        buffer.append(STATIC);
+        append(STATIC);
         space();
       }
 
       if (variableExpr.isFinal()) {
-        buffer.append(FINAL);
+        append(FINAL);
         space();
       }
 
@@ -158,35 +237,41 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(AssignmentExpr assignmentExpr) {
+    if (deferToStack(assignmentExpr)) {
+      return;
+    }
     assignmentExpr.variableExpr().accept(this);
     space();
-    buffer.append(EQUALS);
+    append(EQUALS);
     space();
     assignmentExpr.valueExpr().accept(this);
   }
 
   @Override
   public void visit(MethodInvocationExpr methodInvocationExpr) {
+    if (deferToStack(methodInvocationExpr)) {
+      return;
+    }
     // Expression or static reference.
     if (methodInvocationExpr.exprReferenceExpr() != null) {
       methodInvocationExpr.exprReferenceExpr().accept(this);
-      buffer.append(DOT);
+      append(DOT);
     } else if (methodInvocationExpr.staticReferenceIdentifier() != null) {
       methodInvocationExpr.staticReferenceIdentifier().accept(this);
-      buffer.append(DOT);
+      append(DOT);
     }
 
     if (methodInvocationExpr.isGeneric()) {
-      buffer.append(LEFT_ANGLE);
+      append(LEFT_ANGLE);
       int numGenerics = methodInvocationExpr.generics().size();
       for (int i = 0; i < numGenerics; i++) {
-        buffer.append(methodInvocationExpr.generics().get(i).name());
+        append(methodInvocationExpr.generics().get(i).name());
         if (i < numGenerics - 1) {
-          buffer.append(COMMA);
+          append(COMMA);
           space();
         }
       }
-      buffer.append(RIGHT_ANGLE);
+      append(RIGHT_ANGLE);
     }
 
     methodInvocationExpr.methodIdentifier().accept(this);
@@ -196,7 +281,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
       Expr argExpr = methodInvocationExpr.arguments().get(i);
       argExpr.accept(this);
       if (i < numArguments - 1) {
-        buffer.append(COMMA);
+        append(COMMA);
         space();
       }
     }
@@ -206,6 +291,9 @@ public class JavaWriterVisitor implements AstNodeVisitor {
   /** =============================== STATEMENTS =============================== */
   @Override
   public void visit(ExprStatement exprStatement) {
+    if (deferToStack(exprStatement)) {
+      return;
+    }
     exprStatement.expression().accept(this);
     semicolon();
     newline();
@@ -213,7 +301,10 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(WhileStatement whileStatement) {
-    buffer.append(WHILE);
+    if (deferToStack(whileStatement)) {
+      return;
+    }
+    append(WHILE);
     space();
     leftParen();
     whileStatement.conditionExpr().accept(this);
@@ -228,7 +319,10 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(IfStatement ifStatement) {
-    buffer.append(IF);
+    if (deferToStack(ifStatement)) {
+      return;
+    }
+    append(IF);
     space();
     leftParen();
 
@@ -239,15 +333,15 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     newline();
 
     statements(ifStatement.body());
-    buffer.append(RIGHT_BRACE);
+    append(RIGHT_BRACE);
     if (!ifStatement.elseIfs().isEmpty()) {
       for (Map.Entry<Expr, List<Statement>> elseIfEntry : ifStatement.elseIfs().entrySet()) {
         Expr elseIfConditionExpr = elseIfEntry.getKey();
         List<Statement> elseIfBody = elseIfEntry.getValue();
         space();
-        buffer.append(ELSE);
+        append(ELSE);
         space();
-        buffer.append(IF);
+        append(IF);
         space();
         leftParen();
         elseIfConditionExpr.accept(this);
@@ -261,7 +355,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     }
     if (!ifStatement.elseBody().isEmpty()) {
       space();
-      buffer.append(ELSE);
+      append(ELSE);
       space();
       leftBrace();
       newline();
@@ -273,12 +367,15 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(ForStatement forStatement) {
-    buffer.append(FOR);
+    if (deferToStack(forStatement)) {
+      return;
+    }
+    append(FOR);
     space();
     leftParen();
     forStatement.localVariableExpr().accept(this);
     space();
-    buffer.append(COLON);
+    append(COLON);
     space();
     forStatement.collectionExpr().accept(this);
     rightParen();
@@ -292,7 +389,10 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(TryCatchStatement tryCatchStatement) {
-    buffer.append(TRY);
+    if (deferToStack(tryCatchStatement)) {
+      return;
+    }
+    append(TRY);
     space();
     if (tryCatchStatement.tryResourceExpr() != null) {
       leftParen();
@@ -308,7 +408,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
     if (tryCatchStatement.catchVariableExpr() != null) {
       space();
-      buffer.append(CATCH);
+      append(CATCH);
       space();
       leftParen();
       tryCatchStatement.catchVariableExpr().accept(this);
@@ -325,6 +425,9 @@ public class JavaWriterVisitor implements AstNodeVisitor {
   /** =============================== OTHER =============================== */
   @Override
   public void visit(MethodDefinition methodDefinition) {
+    if (deferToStack(methodDefinition)) {
+      return;
+    }
     // Annotations, if any.
     annotations(methodDefinition.annotations());
 
@@ -335,15 +438,15 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     // Modifiers.
 
     if (methodDefinition.isAbstract()) {
-      buffer.append(ABSTRACT);
+      append(ABSTRACT);
       space();
     }
     if (methodDefinition.isStatic()) {
-      buffer.append(STATIC);
+      append(STATIC);
       space();
     }
     if (methodDefinition.isFinal()) {
-      buffer.append(FINAL);
+      append(FINAL);
       space();
     }
     methodDefinition.returnType().accept(this);
@@ -358,7 +461,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     for (int i = 0; i < numArguments; i++) {
       methodDefinition.arguments().get(i).accept(this);
       if (i < numArguments - 1) {
-        buffer.append(COMMA);
+        append(COMMA);
         space();
       }
     }
@@ -367,7 +470,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     // Thrown exceptions.
     if (!methodDefinition.throwsExceptions().isEmpty()) {
       space();
-      buffer.append(THROWS);
+      append(THROWS);
       space();
 
       int numExceptionsThrown = methodDefinition.throwsExceptions().size();
@@ -376,7 +479,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
         TypeNode exceptionType = exceptionIter.next();
         exceptionType.accept(this);
         if (exceptionIter.hasNext()) {
-          buffer.append(COMMA);
+          append(COMMA);
           space();
         }
       }
@@ -394,7 +497,7 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     newline();
     statements(methodDefinition.body());
     if (methodDefinition.returnExpr() != null) {
-      buffer.append(RETURN);
+      append(RETURN);
       space();
       methodDefinition.returnExpr().accept(this);
       semicolon();
@@ -407,17 +510,30 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
   @Override
   public void visit(ClassDefinition classDefinition) {
+    if (deferToStack(classDefinition)) {
+      return;
+    }
+    ClassRenderEvent event = new ClassRenderEvent();
+    event.begin();
+    long startCharactersWritten = charactersWritten;
+
     if (!classDefinition.isNested()) {
-      buffer.append(String.format("package %s;", classDefinition.packageString()));
+      append(PACKAGE);
+      space();
+      append(classDefinition.packageString());
+      semicolon();
       newline();
       newline();
+
+      // The import visitor walks nested classes too, so imports are collected once for the whole
+      // compilation unit. This stays a separate walk: the imports precede the body, which may be
+      // streamed to a sink before the rest of the class is walked.
+      ImportWriterVisitor importWriterVisitor =
+          importWriterVisitorFactory.apply(classDefinition.packageString());
+      classDefinition.accept(importWriterVisitor);
+      append(importWriterVisitor.write());
     }
 
-    ImportWriterVisitor importWriterVisitor =
-        new ImportWriterVisitor(classDefinition.packageString());
-    classDefinition.accept(importWriterVisitor);
-    buffer.append(importWriterVisitor.write());
- 
     // Annotations, if any.
     annotations(classDefinition.annotations());
 
@@ -430,39 +546,39 @@ public class JavaWriterVisitor implements AstNodeVisitor {
 
     // Modifiers.
     if (classDefinition.isStatic()) {
-      buffer.append(STATIC);
+      append(STATIC);
       space();
     }
     if (classDefinition.isFinal()) {
-      buffer.append(FINAL);
+      append(FINAL);
       space();
     }
     if (classDefinition.isAbstract()) {
-      buffer.append(ABSTRACT);
+      append(ABSTRACT);
       space();
     }
 
     // Name, extends, implements.
-    buffer.append(CLASS);
+    append(CLASS);
     space();
     classDefinition.classIdentifier().accept(this);
     space();
     if (classDefinition.extendsType() != null) {
-      buffer.append(EXTENDS);
+      append(EXTENDS);
       space();
       classDefinition.extendsType().accept(this);
       space();
     }
 
     if (!classDefinition.implementsTypes().isEmpty()) {
-      buffer.append(IMPLEMENTS);
+      append(IMPLEMENTS);
       space();
 
       int numImplementsTypes = classDefinition.implementsTypes().size();
       for (int i = 0; i < numImplementsTypes; i++) {
         classDefinition.implementsTypes().get(i).accept(this);
         if (i < numImplementsTypes - 1) {
-          buffer.append(COMMA);
+          append(COMMA);
         }
         space();
       }
@@ -477,9 +593,83 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     classes(classDefinition.nestedClasses());
 
     rightBrace();
+
+    afterChildren(() -> commitClassRenderEvent(event, classDefinition, startCharactersWritten));
   }
 
   /** =============================== PRIVATE HELPERS =============================== */
+  /**
+   * In explicit-stack mode, schedules {@code node} on the stack instead of visiting it now. Returns
+   * false if the node is the one being expanded, or if the visitor recurses.
+   */
+  private boolean deferToStack(AstNode node) {
+    if (traversalMode == TraversalMode.RECURSIVE || node == expandingNode) {
+      return false;
+    }
+    if (expandingSteps != null) {
+      expandingSteps.add(node);
+    } else {
+      runSteps(node);
+    }
+    return true;
+  }
+
+  /**
+   * Writes {@code root} without recursion. A node is expanded by running its visit method while
+   * recording, rather than performing, its output and child visits. The recorded steps are then
+   * pushed on the stack, so they run in their original order.
+   */
+  private void runSteps(AstNode root) {
+    Deque<Object> stack = new ArrayDeque<>();
+    List<Object> steps = new ArrayList<>();
+    stack.push(root);
+    try {
+      while (!stack.isEmpty()) {
+        Object step = stack.pop();
+        if (step instanceof String) {
+          emit((String) step);
+        } else if (step instanceof Runnable) {
+          ((Runnable) step).run();
+        } else {
+          AstNode node = (AstNode) step;
+          expandingNode = node;
+          expandingSteps = steps;
+          node.accept(this);
+          expandingNode = null;
+          expandingSteps = null;
+          for (int i = steps.size() - 1; i >= 0; i--) {
+            stack.push(steps.get(i));
+          }
+          steps.clear();
+        }
+      }
+    } finally {
+      expandingNode = null;
+      expandingSteps = null;
+    }
+  }
+
+  // Runs code that must follow the output of the current node's children.
+  private void afterChildren(Runnable runnable) {
+    if (expandingSteps != null) {
+      expandingSteps.add(runnable);
+    } else {
+      runnable.run();
+    }
+  }
+
+  private void commitClassRenderEvent(
+      ClassRenderEvent event, ClassDefinition classDefinition, long startCharactersWritten) {
+    if (event.shouldCommit()) {
+      event.className = classDefinition.classIdentifier().name();
+      event.nested = classDefinition.isNested();
+      event.methodCount = classDefinition.methods().size();
+      event.statementCount = classDefinition.statements().size();
+      event.charactersEmitted = charactersWritten - startCharactersWritten;
+      event.commit();
+    }
+  }
+
   private void annotations(List<AnnotationNode> annotations) {
     for (AnnotationNode annotation : annotations) {
       annotation.accept(this);
@@ -508,31 +698,48 @@ public class JavaWriterVisitor implements AstNodeVisitor {
     }
   }
 
+  private void append(String code) {
+    if (expandingSteps != null) {
+      expandingSteps.add(code);
+    } else {
+      emit(code);
+    }
+  }
+
+  private void emit(String code) {
+    try {
+      sink.append(code);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    charactersWritten += code.length();
+  }
+
   private void space() {
-    buffer.append(SPACE);
+    append(SPACE);
   }
 
   private void newline() {
-    buffer.append(NEWLINE);
+    append(NEWLINE);
   }
 
   private void leftParen() {
-    buffer.append(LEFT_PAREN);
+    append(LEFT_PAREN);
   }
 
   private void rightParen() {
-    buffer.append(RIGHT_PAREN);
+    append(RIGHT_PAREN);
   }
 
   private void leftBrace() {
-    buffer.append(LEFT_BRACE);
+    append(LEFT_BRACE);
   }
 
   private void rightBrace() {
-    buffer.append(RIGHT_BRACE);
+    append(RIGHT_BRACE);
   }
 
   private void semicolon() {
-    buffer.append(SEMICOLON);
+    append(SEMICOLON);
   }
 }
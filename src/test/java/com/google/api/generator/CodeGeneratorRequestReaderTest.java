@@ -0,0 +1,102 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class CodeGeneratorRequestReaderTest {
+  @Test
+  public void read_byteStream() throws IOException {
+    CodeGeneratorRequest request = createRequest(10);
+    InputStream in = new ByteArrayInputStream(request.toByteArray());
+    assertThat(CodeGeneratorRequestReader.read(in, ExtensionRegistry.newInstance()))
+        .isEqualTo(request);
+  }
+
+  @Test
+  public void read_byteStreamLargerThanBuffer() throws IOException {
+    CodeGeneratorRequest request = createRequest(5000);
+    assertThat(request.getSerializedSize()).isGreaterThan(64 * 1024);
+    InputStream in = new ByteArrayInputStream(request.toByteArray());
+    assertThat(CodeGeneratorRequestReader.read(in, ExtensionRegistry.newInstance()))
+        .isEqualTo(request);
+  }
+
+  @Test
+  public void read_mappedFile() throws IOException {
+    CodeGeneratorRequest request = createRequest(5000);
+    Path file = Files.createTempFile("request", ".pb");
+    try {
+      Files.write(file, request.toByteArray());
+      try (FileInputStream in = new FileInputStream(file.toFile())) {
+        assertThat(CodeGeneratorRequestReader.read(in, ExtensionRegistry.newInstance()))
+            .isEqualTo(request);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void read_emptyFile() throws IOException {
+    Path file = Files.createTempFile("request", ".pb");
+    try (FileInputStream in = new FileInputStream(file.toFile())) {
+      assertThat(CodeGeneratorRequestReader.read(in, ExtensionRegistry.newInstance()))
+          .isEqualTo(CodeGeneratorRequest.getDefaultInstance());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void readBuffer_parameter() throws IOException {
+    CodeGeneratorRequest request = createRequest(10);
+    CodeGeneratorRequestReader.RequestBuffer buffer =
+        CodeGeneratorRequestReader.readBuffer(new ByteArrayInputStream(request.toByteArray()));
+    assertThat(buffer.parameter()).isEqualTo("foo/bar,parallelism=4");
+    assertThat(buffer.parse(ExtensionRegistry.newInstance())).isEqualTo(request);
+  }
+
+  @Test
+  public void readBuffer_noParameter() throws IOException {
+    byte[] request =
+        CodeGeneratorRequest.newBuilder().addFileToGenerate("foo.proto").build().toByteArray();
+    assertThat(
+            CodeGeneratorRequestReader.readBuffer(new ByteArrayInputStream(request)).parameter())
+        .isEmpty();
+  }
+
+  private static CodeGeneratorRequest createRequest(int fileCount) {
+    CodeGeneratorRequest.Builder request =
+        CodeGeneratorRequest.newBuilder().setParameter("foo/bar,parallelism=4");
+    for (int i = 0; i < fileCount; i++) {
+      String name = String.format("google/foo/v1/foo%d.proto", i);
+      request.addProtoFile(
+          FileDescriptorProto.newBuilder().setName(name).setPackage("google.foo.v1").build());
+    }
+    return request.addFileToGenerate("google/foo/v1/foo0.proto").build();
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.Test;
+
+public class CodeGeneratorResponseWriterTest {
+  private static final String FILE_NAME = "foo/temp-gen.srcjar";
+
+  @Test
+  public void writeSingleFileResponse_inMemory() throws IOException {
+    assertResponseMatchesMessage(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void writeSingleFileResponse_spilled() throws IOException {
+    assertResponseMatchesMessage(0);
+  }
+
+  @Test
+  public void writeSingleFileResponse_empty() throws IOException {
+    SpillableOutputStream content = new SpillableOutputStream(Long.MAX_VALUE);
+    content.close();
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CodeGeneratorResponseWriter.writeSingleFileResponse(FILE_NAME, content, actual);
+
+    CodeGeneratorResponse.Builder expected = CodeGeneratorResponse.newBuilder();
+    expected.addFileBuilder().setName(FILE_NAME).setContentBytes(ByteString.EMPTY);
+    assertThat(actual.toByteArray()).isEqualTo(expected.build().toByteArray());
+  }
+
+  private static void assertResponseMatchesMessage(long spillThreshold) throws IOException {
+    SpillableOutputStream content = new SpillableOutputStream(spillThreshold);
+    ByteString.Output expectedContent = ByteString.newOutput();
+    writeJar(content);
+    writeJar(expectedContent);
+    content.close();
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CodeGeneratorResponseWriter.writeSingleFileResponse(FILE_NAME, content, actual);
+    content.discard();
+
+    CodeGeneratorResponse.Builder expected = CodeGeneratorResponse.newBuilder();
+    expected.addFileBuilder().setName(FILE_NAME).setContentBytes(expectedContent.toByteString());
+    assertThat(actual.toByteArray()).isEqualTo(expected.build().toByteArray());
+  }
+
+  private static void writeJar(OutputStream output) throws IOException {
+    JarOutputStream jos = new JarOutputStream(output);
+    for (int i = 0; i < 200; i++) {
+      jos.putNextEntry(new JarEntry(String.format("com/google/foo/Foo%d.java", i)));
+      String code =
+          String.format("package com.google.foo;\npublic class Foo%d { int foo = %d; }\n", i, i);
+      jos.write(code.getBytes(StandardCharsets.UTF_8));
+    }
+    jos.finish();
+    jos.flush();
+  }
+}
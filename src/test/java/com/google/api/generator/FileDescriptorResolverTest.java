@@ -0,0 +1,192 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class FileDescriptorResolverTest {
+  @Test
+  public void topologicalLevels_diamond() {
+    FileDescriptorProto a = createFileProto("a", Arrays.asList());
+    FileDescriptorProto b = createFileProto("b", Arrays.asList("a"));
+    FileDescriptorProto c = createFileProto("c", Arrays.asList("a"));
+    FileDescriptorProto d = createFileProto("d", Arrays.asList("b", "c"));
+
+    assertThat(FileDescriptorResolver.topologicalLevels(Arrays.asList(a, b, c, d)))
+        .containsExactly(Arrays.asList(a), Arrays.asList(b, c), Arrays.asList(d))
+        .inOrder();
+  }
+
+  @Test
+  public void topologicalLevels_missingDependency() {
+    FileDescriptorProto b = createFileProto("b", Arrays.asList("a"));
+    assertThrows(
+        NullPointerException.class,
+        () -> FileDescriptorResolver.topologicalLevels(Arrays.asList(b)));
+  }
+
+  @Test
+  public void dependencyClosure_diamond() {
+    FileDescriptorProto a = createFileProto("a", Arrays.asList());
+    FileDescriptorProto b = createFileProto("b", Arrays.asList("a"));
+    FileDescriptorProto c = createFileProto("c", Arrays.asList("a"));
+    FileDescriptorProto d = createFileProto("d", Arrays.asList("b", "c"));
+    FileDescriptorProto e = createFileProto("e", Arrays.asList("c"));
+    List<FileDescriptorProto> fileProtos = Arrays.asList(a, b, c, d, e);
+
+    assertThat(FileDescriptorResolver.dependencyClosure(fileProtos, Arrays.asList("b")))
+        .containsExactly(a, b)
+        .inOrder();
+    assertThat(FileDescriptorResolver.dependencyClosure(fileProtos, Arrays.asList("e", "b")))
+        .containsExactly(a, b, c, e)
+        .inOrder();
+    assertThat(FileDescriptorResolver.dependencyClosure(fileProtos, Arrays.asList("d")))
+        .containsExactly(a, b, c, d)
+        .inOrder();
+  }
+
+  @Test
+  public void dependencyClosure_missingFile() {
+    List<FileDescriptorProto> fileProtos = Arrays.asList(createFileProto("a", Arrays.asList()));
+    assertThrows(
+        NullPointerException.class,
+        () -> FileDescriptorResolver.dependencyClosure(fileProtos, Arrays.asList("b")));
+  }
+
+  @Test
+  public void resolve_closureMatchesFullResolution() throws Exception {
+    List<FileDescriptorProto> fileProtos = createLayeredFileProtos(4, 4);
+    Map<String, FileDescriptor> allDescriptors = FileDescriptorResolver.resolve(fileProtos);
+    Map<String, FileDescriptor> closureDescriptors =
+        FileDescriptorResolver.resolve(
+            FileDescriptorResolver.dependencyClosure(fileProtos, Arrays.asList("layer3_0")));
+
+    // Every file depends on the files with the same and the next index in the previous layer.
+    assertThat(closureDescriptors.keySet())
+        .containsExactly(
+            "layer0_0",
+            "layer0_1",
+            "layer0_2",
+            "layer0_3",
+            "layer1_0",
+            "layer1_1",
+            "layer1_2",
+            "layer2_0",
+            "layer2_1",
+            "layer3_0");
+    for (Map.Entry<String, FileDescriptor> entry : closureDescriptors.entrySet()) {
+      assertThat(entry.getValue().toProto())
+          .isEqualTo(allDescriptors.get(entry.getKey()).toProto());
+    }
+  }
+
+  @Test
+  public void resolve_parallelMatchesSerial() throws Exception {
+    List<FileDescriptorProto> fileProtos = createLayeredFileProtos(6, 8);
+    Map<String, FileDescriptor> serialDescriptors = FileDescriptorResolver.resolve(fileProtos);
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Map<String, FileDescriptor> parallelDescriptors =
+          FileDescriptorResolver.resolve(fileProtos, pool);
+
+      assertThat(parallelDescriptors.keySet()).isEqualTo(serialDescriptors.keySet());
+      for (Map.Entry<String, FileDescriptor> entry : serialDescriptors.entrySet()) {
+        FileDescriptor serialDescriptor = entry.getValue();
+        FileDescriptor parallelDescriptor = parallelDescriptors.get(entry.getKey());
+        assertThat(parallelDescriptor.toProto()).isEqualTo(serialDescriptor.toProto());
+        assertThat(dependencyNames(parallelDescriptor))
+            .isEqualTo(dependencyNames(serialDescriptor));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void resolve_parallelMissingDependency() {
+    List<FileDescriptorProto> fileProtos = Arrays.asList(createFileProto("b", Arrays.asList("a")));
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      assertThrows(
+          NullPointerException.class, () -> FileDescriptorResolver.resolve(fileProtos, pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  // Creates numLayers layers of filesPerLayer files, where every file depends on two files of the
+  // previous layer.
+  private static List<FileDescriptorProto> createLayeredFileProtos(
+      int numLayers, int filesPerLayer) {
+    List<FileDescriptorProto> fileProtos = new ArrayList<>();
+    for (int layer = 0; layer < numLayers; layer++) {
+      for (int i = 0; i < filesPerLayer; i++) {
+        List<String> deps = new ArrayList<>();
+        if (layer > 0) {
+          deps.add(String.format("layer%d_%d", layer - 1, i));
+          deps.add(String.format("layer%d_%d", layer - 1, (i + 1) % filesPerLayer));
+        }
+        fileProtos.add(createFileProto(String.format("layer%d_%d", layer, i), deps));
+      }
+    }
+    return fileProtos;
+  }
+
+  // Creates a file with a single message that has a field for each dependency's message.
+  private static FileDescriptorProto createFileProto(String name, List<String> deps) {
+    DescriptorProto.Builder messageBuilder = DescriptorProto.newBuilder().setName("Message");
+    for (int i = 0; i < deps.size(); i++) {
+      messageBuilder.addField(
+          FieldDescriptorProto.newBuilder()
+              .setName("field" + i)
+              .setNumber(i + 1)
+              .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL)
+              .setType(FieldDescriptorProto.Type.TYPE_MESSAGE)
+              .setTypeName(String.format(".%s.Message", deps.get(i)))
+              .build());
+    }
+
+    FileDescriptorProto.Builder fileBuilder =
+        FileDescriptorProto.newBuilder()
+            .setName(name)
+            .setPackage(name)
+            .addMessageType(messageBuilder.build());
+    for (String dep : deps) {
+      fileBuilder.addDependency(dep);
+    }
+    return fileBuilder.build();
+  }
+
+  private static List<String> dependencyNames(FileDescriptor fileDescriptor) {
+    List<String> names = new ArrayList<>();
+    for (FileDescriptor dependency : fileDescriptor.getDependencies()) {
+      names.add(dependency.getName());
+    }
+    return names;
+  }
+}
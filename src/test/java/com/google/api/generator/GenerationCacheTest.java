@@ -0,0 +1,196 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.ServiceDescriptorProto;
+import com.google.protobuf.Descriptors.DescriptorValidationException;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.Descriptors.ServiceDescriptor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GenerationCacheTest {
+  private static final String VERSION = "1";
+  private static final long COLD_START_HIT_MAX_MILLIS = 1000;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void getAndPut() throws IOException {
+    GenerationCache cache = createCache(Long.MAX_VALUE);
+    List<GeneratedFile> files = createFiles("foo");
+
+    assertThat(cache.get("foo")).isNull();
+    cache.put("foo", files);
+    assertThat(cache.get("foo")).isEqualTo(files);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_corruptEntry() throws IOException {
+    Path directory = temporaryFolder.newFolder().toPath();
+    GenerationCache cache = new GenerationCache(directory, Long.MAX_VALUE, VERSION);
+    Path entry = directory.resolve("foo.entry");
+    Files.write(entry, new byte[] {(byte) 0xff});
+
+    assertThat(cache.get("foo")).isNull();
+    assertThat(Files.exists(entry)).isFalse();
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void put_evictsLeastRecentlyUsed() throws IOException {
+    Path directory = temporaryFolder.newFolder().toPath();
+    new GenerationCache(directory, Long.MAX_VALUE, VERSION).put("size", createFiles("a"));
+    long entrySize = Files.size(directory.resolve("size.entry"));
+    Files.delete(directory.resolve("size.entry"));
+
+    // Room for two entries but not three.
+    GenerationCache cache = new GenerationCache(directory, entrySize * 5 / 2, VERSION);
+    cache.put("a", createFiles("a"));
+    cache.put("b", createFiles("b"));
+    Files.setLastModifiedTime(directory.resolve("a.entry"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(directory.resolve("b.entry"), FileTime.fromMillis(2000));
+    assertThat(cache.get("a")).isNotNull();
+    cache.put("c", createFiles("c"));
+
+    assertThat(Files.exists(directory.resolve("a.entry"))).isTrue();
+    assertThat(Files.exists(directory.resolve("b.entry"))).isFalse();
+    assertThat(Files.exists(directory.resolve("c.entry"))).isTrue();
+  }
+
+  @Test
+  public void put_evictsEntriesWrittenByOtherProcesses() throws IOException {
+    Path directory = temporaryFolder.newFolder().toPath();
+    new GenerationCache(directory, Long.MAX_VALUE, VERSION).put("size", createFiles("a"));
+    long entrySize = Files.size(directory.resolve("size.entry"));
+    Files.delete(directory.resolve("size.entry"));
+
+    GenerationCache cache = new GenerationCache(directory, entrySize * 5 / 2, VERSION);
+    new GenerationCache(directory, Long.MAX_VALUE, VERSION).put("x", createFiles("x"));
+    Files.setLastModifiedTime(directory.resolve("x.entry"), FileTime.fromMillis(1000));
+    cache.put("a", createFiles("a"));
+    Files.setLastModifiedTime(directory.resolve("a.entry"), FileTime.fromMillis(2000));
+    cache.put("b", createFiles("b"));
+    // The cache does not know about the other entry until it is too large on its own.
+    assertThat(Files.exists(directory.resolve("x.entry"))).isTrue();
+    cache.put("c", createFiles("c"));
+
+    assertThat(Files.exists(directory.resolve("x.entry"))).isFalse();
+    assertThat(Files.exists(directory.resolve("a.entry"))).isFalse();
+    assertThat(Files.exists(directory.resolve("b.entry"))).isTrue();
+    assertThat(Files.exists(directory.resolve("c.entry"))).isTrue();
+  }
+
+  @Test
+  public void key_dependsOnInputs() throws IOException, DescriptorValidationException {
+    GenerationCache cache = createCache(Long.MAX_VALUE);
+    FileDescriptorProto dependency = FileDescriptorProto.newBuilder().setName("a.proto").build();
+    FileDescriptorProto changedDependency =
+        dependency.toBuilder()
+            .addMessageType(DescriptorProto.newBuilder().setName("Bar").build())
+            .build();
+    ServiceDescriptor service = createService(dependency);
+    String key = cache.key(service);
+
+    assertThat(cache.key(createService(dependency))).isEqualTo(key);
+    assertThat(cache.key(createService(changedDependency))).isNotEqualTo(key);
+    GenerationCache otherVersionCache =
+        new GenerationCache(temporaryFolder.newFolder().toPath(), Long.MAX_VALUE, "2");
+    assertThat(otherVersionCache.key(service)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void hashLocation_dependsOnClasses() throws IOException {
+    Path classes = temporaryFolder.newFolder().toPath();
+    Path classFile = Files.createDirectories(classes.resolve("com/google")).resolve("Foo.class");
+    Files.write(classFile, new byte[] {1});
+    String version = GenerationCache.hashLocation(classes);
+
+    assertThat(GenerationCache.hashLocation(classes)).isEqualTo(version);
+    Files.write(classFile, new byte[] {2});
+    assertThat(GenerationCache.hashLocation(classes)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void hashLocation_dependsOnJar() throws IOException {
+    Path jar = temporaryFolder.newFile("foo.jar").toPath();
+    Files.write(jar, new byte[] {1});
+    String version = GenerationCache.hashLocation(jar);
+
+    assertThat(GenerationCache.hashLocation(jar)).isEqualTo(version);
+    Files.write(jar, new byte[] {2});
+    assertThat(GenerationCache.hashLocation(jar)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void get_coldStartHit() throws IOException {
+    Path directory = temporaryFolder.newFolder().toPath();
+    String version = GenerationCache.computeGeneratorVersion();
+    new GenerationCache(directory, Long.MAX_VALUE, version).put("foo", createFiles("foo"));
+
+    // Every plugin invocation starts a new JVM, which versions the generator and opens the cache
+    // before it can reuse an entry.
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    GenerationCache cache =
+        new GenerationCache(directory, Long.MAX_VALUE, GenerationCache.computeGeneratorVersion());
+    assertThat(cache.get("foo")).isNotNull();
+    assertThat(stopwatch.elapsed(TimeUnit.MILLISECONDS)).isLessThan(COLD_START_HIT_MAX_MILLIS);
+  }
+
+  private GenerationCache createCache(long maxBytes) throws IOException {
+    return new GenerationCache(temporaryFolder.newFolder().toPath(), maxBytes, VERSION);
+  }
+
+  private static List<GeneratedFile> createFiles(String name) {
+    return Arrays.asList(
+        GeneratedFile.builder()
+            .setPath(String.format("com/google/%s/%sClient.java", name, name))
+            .setContent(ByteString.copyFromUtf8(String.format("class %sClient {}", name)))
+            .build(),
+        GeneratedFile.builder()
+            .setPath(String.format("com/google/%s/%sModule.java", name, name))
+            .setContent(ByteString.copyFromUtf8(String.format("class %sModule {}", name)))
+            .build());
+  }
+
+  private static ServiceDescriptor createService(FileDescriptorProto dependencyProto)
+      throws DescriptorValidationException {
+    FileDescriptor dependency = FileDescriptor.buildFrom(dependencyProto, new FileDescriptor[0]);
+    FileDescriptorProto fileProto =
+        FileDescriptorProto.newBuilder()
+            .setName("foo.proto")
+            .addDependency(dependencyProto.getName())
+            .addService(ServiceDescriptorProto.newBuilder().setName("Foo").build())
+            .build();
+    return FileDescriptor.buildFrom(fileProto, new FileDescriptor[] {dependency})
+        .findServiceByName("Foo");
+  }
+}
@@ -0,0 +1,246 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GeneratorDaemonTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private GeneratorDaemon daemon;
+  private Future<?> serving;
+  private Path tokenFile;
+  private Path workingDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+    byte[] token = GeneratorDaemon.newToken();
+    tokenFile = temporaryFolder.getRoot().toPath().resolve("daemon.token");
+    workingDirectory = temporaryFolder.newFolder().toPath().toAbsolutePath();
+    GeneratorDaemon.writeTokenFile(tokenFile, token);
+    daemon = new GeneratorDaemon(0, token, 1, TimeUnit.MINUTES);
+    serving =
+        executor.submit(
+            () -> {
+              daemon.serve();
+              return null;
+            });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    daemon.close();
+    serving.get();
+    executor.shutdown();
+  }
+
+  @Test
+  public void tryForward_matchesInProcessResponse() throws Exception {
+    byte[] request =
+        CodeGeneratorRequest.newBuilder()
+            .setParameter("foo")
+            .addProtoFile(FileDescriptorProto.newBuilder().setName("foo.proto").build())
+            .addFileToGenerate("foo.proto")
+            .build()
+            .toByteArray();
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    Main.run(new ByteArrayInputStream(request), expected);
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    assertTrue(
+        DaemonClient.tryForward(
+            daemon.getPort(),
+            tokenFile,
+            workingDirectory,
+            new ByteArrayInputStream(request),
+            actual));
+    assertThat(actual.toByteArray()).isEqualTo(expected.toByteArray());
+  }
+
+  @Test
+  public void tryForward_generationError() throws Exception {
+    byte[] request = CodeGeneratorRequest.newBuilder().setParameter("foo").build().toByteArray();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                DaemonClient.tryForward(
+                    daemon.getPort(),
+                    tokenFile,
+                    workingDirectory,
+                    new ByteArrayInputStream(request),
+                    out));
+    assertThat(exception.getMessage()).contains("Expected: at least one proto file input");
+    assertThat(out.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void tryForward_invalidToken() throws Exception {
+    Path otherTokenFile = temporaryFolder.getRoot().toPath().resolve("other.token");
+    GeneratorDaemon.writeTokenFile(otherTokenFile, GeneratorDaemon.newToken());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IllegalStateException exception =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                DaemonClient.tryForward(
+                    daemon.getPort(),
+                    otherTokenFile,
+                    workingDirectory,
+                    new ByteArrayInputStream(new byte[] {1, 2, 3}),
+                    out));
+    assertThat(exception.getMessage()).contains("Invalid generator daemon token");
+    assertThat(out.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void tryForward_resolvesPathsAgainstWorkingDirectory() throws Exception {
+    byte[] request =
+        CodeGeneratorRequest.newBuilder()
+            .setParameter("metrics-report=metrics.json")
+            .addProtoFile(FileDescriptorProto.newBuilder().setName("foo.proto").build())
+            .addFileToGenerate("foo.proto")
+            .build()
+            .toByteArray();
+
+    assertTrue(
+        DaemonClient.tryForward(
+            daemon.getPort(),
+            tokenFile,
+            workingDirectory,
+            new ByteArrayInputStream(request),
+            new ByteArrayOutputStream()));
+    assertTrue(Files.exists(workingDirectory.resolve("metrics.json")));
+  }
+
+  @Test
+  public void tryForward_relativeWorkingDirectory() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            DaemonClient.tryForward(
+                daemon.getPort(),
+                tokenFile,
+                Paths.get("foo"),
+                new ByteArrayInputStream(new byte[0]),
+                new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void tryForward_moreClientsThanThreads() throws Exception {
+    // The daemon handles one request per CPU and queues two more per CPU. The remaining clients
+    // wait in the connection backlog for a free slot instead of failing.
+    int clientCount = 3 * Runtime.getRuntime().availableProcessors() + 16;
+    Path otherTokenFile = temporaryFolder.getRoot().toPath().resolve("other.token");
+    GeneratorDaemon.writeTokenFile(otherTokenFile, GeneratorDaemon.newToken());
+    ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+    try {
+      List<Future<String>> errors = new ArrayList<>();
+      for (int i = 0; i < clientCount; i++) {
+        errors.add(
+            clients.submit(
+                () -> {
+                  try {
+                    DaemonClient.tryForward(
+                        daemon.getPort(),
+                        otherTokenFile,
+                        workingDirectory,
+                        new ByteArrayInputStream(new byte[] {1, 2, 3}),
+                        new ByteArrayOutputStream());
+                    return "forwarded";
+                  } catch (IllegalStateException e) {
+                    return e.getMessage();
+                  }
+                }));
+      }
+      for (Future<String> error : errors) {
+        assertThat(error.get()).contains("Invalid generator daemon token");
+      }
+    } finally {
+      clients.shutdown();
+    }
+  }
+
+  @Test
+  public void tryForward_noTokenFile() throws Exception {
+    ByteArrayInputStream in = new ByteArrayInputStream(new byte[] {1, 2, 3});
+    assertFalse(
+        DaemonClient.tryForward(
+            daemon.getPort(),
+            temporaryFolder.getRoot().toPath().resolve("missing.token"),
+            workingDirectory,
+            in,
+            new ByteArrayOutputStream()));
+    assertThat(in.available()).isEqualTo(3);
+  }
+
+  @Test
+  public void tryForward_noDaemon() throws Exception {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+    ByteArrayInputStream in = new ByteArrayInputStream(new byte[] {1, 2, 3});
+    assertFalse(
+        DaemonClient.tryForward(
+            port, tokenFile, workingDirectory, in, new ByteArrayOutputStream()));
+    assertThat(in.available()).isEqualTo(3);
+  }
+
+  @Test
+  public void writeTokenFile_ownerOnly() throws Exception {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)))
+        .isEqualTo("rw-------");
+    assertThat(Files.size(tokenFile)).isEqualTo((long) GeneratorDaemon.TOKEN_LENGTH);
+  }
+
+  @Test(timeout = 10000)
+  public void serve_stopsWhenIdle() throws Exception {
+    GeneratorDaemon idleDaemon =
+        new GeneratorDaemon(0, GeneratorDaemon.newToken(), 100, TimeUnit.MILLISECONDS);
+    idleDaemon.serve();
+  }
+}
@@ -0,0 +1,140 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.ServiceDescriptorProto;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorRequest;
+import com.google.protobuf.compiler.PluginProtos.CodeGeneratorResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class MainTest {
+  private static final int SERVICE_COUNT = 8;
+
+  @Test
+  public void run_parallelSrcJarMatchesSerial() throws Exception {
+    for (String compression : new String[] {"deflate", "stored", "parallel"}) {
+      String options = "srcjar-compression=" + compression;
+      // Entries are stamped with the current time at a two-second resolution, so the parallel
+      // srcjar is compared with serial ones written just before and after it.
+      ByteString serialBefore = generateSrcJar(options + ",parallelism=1");
+      ByteString parallel = generateSrcJar(options + ",parallelism=4");
+      ByteString serialAfter = generateSrcJar(options + ",parallelism=1");
+
+      assertThat(parallel.isEmpty()).isFalse();
+      assertThat(parallel.equals(serialBefore) || parallel.equals(serialAfter)).isTrue();
+    }
+  }
+
+  @Test
+  public void run_recordsFlightRecorderEvents() throws Exception {
+    List<RecordedEvent> events;
+    Path recordingFile = Files.createTempFile("generator", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.api.generator.DescriptorBuild");
+      recording.enable("com.google.api.generator.ServiceGeneration");
+      recording.enable("com.google.api.generator.JarEntryWrite");
+      recording.start();
+      generateSrcJar("parallelism=1");
+      recording.stop();
+      recording.dump(recordingFile);
+      events = RecordingFile.readAllEvents(recordingFile);
+    } finally {
+      Files.delete(recordingFile);
+    }
+
+    List<String> descriptorBuilds = new ArrayList<>();
+    List<String> serviceGenerations = new ArrayList<>();
+    List<String> jarEntryWrites = new ArrayList<>();
+    for (RecordedEvent event : events) {
+      switch (event.getEventType().getName()) {
+        case "com.google.api.generator.DescriptorBuild":
+          descriptorBuilds.add(
+              String.format("%s %d", event.getString("fileName"), event.getInt("dependencyCount")));
+          break;
+        case "com.google.api.generator.ServiceGeneration":
+          assertThat(event.getLong("bytesGenerated")).isGreaterThan(0L);
+          serviceGenerations.add(
+              String.format(
+                  "%s %d %b",
+                  event.getString("serviceName"),
+                  event.getInt("fileCount"),
+                  event.getBoolean("cacheHit")));
+          break;
+        default:
+          assertThat(event.getLong("uncompressedSize")).isGreaterThan(0L);
+          jarEntryWrites.add(event.getString("entryName"));
+      }
+    }
+    assertThat(descriptorBuilds).hasSize(SERVICE_COUNT);
+    assertThat(descriptorBuilds.get(0)).isEqualTo("library0.proto 0");
+    assertThat(serviceGenerations).hasSize(SERVICE_COUNT);
+    assertThat(serviceGenerations.get(0))
+        .isEqualTo("google.example.library0.LibraryService 2 false");
+    assertThat(jarEntryWrites).hasSize(2 * SERVICE_COUNT);
+    assertThat(jarEntryWrites.get(0)).endsWith("LibraryServiceAsyncClient.java");
+  }
+
+  @Test
+  public void run_measuresRequestParsing() throws Exception {
+    Path report = Files.createTempFile("metrics", ".json");
+    try {
+      generateSrcJar("metrics-report=" + report);
+      String json = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+      // Parsing is measured with a span, so its allocation is recorded along with its wall time.
+      assertThat(json)
+          .containsMatch(
+              "\"parseRequest\": \\{\"count\": 1, \"wallNanos\": [1-9][0-9]*, "
+                  + "\"cpuNanos\": [0-9]+, \"allocatedBytes\": [1-9][0-9]*\\}");
+    } finally {
+      Files.delete(report);
+    }
+  }
+
+  private static ByteString generateSrcJar(String parameter) throws Exception {
+    CodeGeneratorRequest.Builder request =
+        CodeGeneratorRequest.newBuilder().setParameter(parameter);
+    for (int i = 0; i < SERVICE_COUNT; i++) {
+      String fileName = String.format("library%d.proto", i);
+      request
+          .addProtoFile(
+              FileDescriptorProto.newBuilder()
+                  .setName(fileName)
+                  .setPackage(String.format("google.example.library%d", i))
+                  .addService(ServiceDescriptorProto.newBuilder().setName("LibraryService").build())
+                  .build())
+          .addFileToGenerate(fileName);
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Main.run(new ByteArrayInputStream(request.build().toByteArray()), output);
+    CodeGeneratorResponse response = CodeGeneratorResponse.parseFrom(output.toByteArray());
+    assertThat(response.getFileCount()).isEqualTo(1);
+    return response.getFile(0).getContentBytes();
+  }
+}
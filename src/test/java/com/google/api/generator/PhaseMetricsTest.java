@@ -0,0 +1,85 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class PhaseMetricsTest {
+  @Test
+  public void start_recordsSpans() {
+    PhaseMetrics metrics = PhaseMetrics.create();
+    for (int i = 0; i < 3; i++) {
+      try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.GENERATE_SERVICES)) {
+        assertThat(metrics.isEnabled()).isTrue();
+      }
+    }
+
+    String json = metrics.toJson();
+    assertThat(json).contains("\"generateServices\": {\"count\": 3, ");
+    assertThat(json).contains("\"parseRequest\": {\"count\": 0, \"wallNanos\": 0, ");
+  }
+
+  @Test
+  public void setCounter() {
+    PhaseMetrics metrics = PhaseMetrics.create();
+    metrics.setCounter("cacheHits", 4);
+    metrics.setCounter("cacheMisses", 2);
+    assertThat(metrics.toJson())
+        .contains("  \"counters\": {\n    \"cacheHits\": 4,\n    \"cacheMisses\": 2\n  }\n}\n");
+  }
+
+  @Test
+  public void setCounter_escapesName() {
+    PhaseMetrics metrics = PhaseMetrics.create();
+    metrics.setCounter("a\"b\\c\n", 1);
+    assertThat(metrics.toJson()).contains("    \"a\\\"b\\\\c\\u000a\": 1\n");
+  }
+
+  @Test
+  public void disabled() {
+    PhaseMetrics metrics = PhaseMetrics.disabled();
+    assertThat(metrics.isEnabled()).isFalse();
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.WRITE_SRCJAR)) {
+      metrics.setCounter("cacheHits", 1);
+    }
+
+    String json = metrics.toJson();
+    assertThat(json).contains("\"writeSrcjar\": {\"count\": 0, ");
+    assertThat(json).contains("  \"counters\": {}\n");
+  }
+
+  @Test
+  public void writeReport() throws IOException {
+    PhaseMetrics metrics = PhaseMetrics.create();
+    try (PhaseMetrics.Span span = metrics.start(PhaseMetrics.Phase.PARSE_REQUEST)) {
+      metrics.setCounter("foo", 1);
+    }
+    Path report = Files.createTempFile("metrics", ".json");
+    try {
+      metrics.writeReport(report);
+      String json = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+      assertThat(json).startsWith("{\n  \"wallNanos\": ");
+      assertThat(json).contains("\"parseRequest\": {\"count\": 1, ");
+    } finally {
+      Files.delete(report);
+    }
+  }
+}
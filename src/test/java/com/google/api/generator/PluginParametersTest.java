@@ -0,0 +1,104 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class PluginParametersTest {
+  @Test
+  public void parse_empty() {
+    PluginParameters parameters = PluginParameters.parse("");
+    assertThat(parameters.outputPrefix()).isEqualTo("");
+    assertThat(parameters.parallelism()).isEqualTo(1);
+    assertThat(parameters.lazyDescriptors()).isFalse();
+    assertThat(parameters.cacheDir()).isNull();
+    assertThat(parameters.metricsReport()).isNull();
+    assertThat(parameters.srcJarCompression()).isEqualTo(SrcJarWriter.Compression.DEFLATE);
+    assertThat(parameters.srcJarDeflateLevel()).isEqualTo(-1);
+  }
+
+  @Test
+  public void parse_outputPrefixOnly() {
+    PluginParameters parameters = PluginParameters.parse("foo/bar-");
+    assertThat(parameters.outputPrefix()).isEqualTo("foo/bar-");
+    assertThat(parameters.parallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void parse_optionsAndOutputPrefix() {
+    PluginParameters parameters =
+        PluginParameters.parse("parallelism=8,foo/bar-,lazy-descriptors=true,spill-threshold=0");
+    assertThat(parameters.outputPrefix()).isEqualTo("foo/bar-");
+    assertThat(parameters.parallelism()).isEqualTo(8);
+    assertThat(parameters.lazyDescriptors()).isTrue();
+    assertThat(parameters.spillThreshold()).isEqualTo(0L);
+  }
+
+  @Test
+  public void parse_unknownOptionInOutputPrefix() {
+    // Parameters from before options existed were used as the prefix as a whole.
+    PluginParameters parameters = PluginParameters.parse("out/version=2-");
+    assertThat(parameters.outputPrefix()).isEqualTo("out/version=2-");
+    assertThat(parameters.parallelism()).isEqualTo(1);
+
+    parameters = PluginParameters.parse("foo=bar, baz,parallelism=2");
+    assertThat(parameters.outputPrefix()).isEqualTo("foo=bar, baz");
+    assertThat(parameters.parallelism()).isEqualTo(2);
+  }
+
+  @Test
+  public void parse_cacheOptions() {
+    PluginParameters parameters =
+        PluginParameters.parse("foo/bar-,cache-dir=/tmp/gapic-cache,cache-max-bytes=1024");
+    assertThat(parameters.outputPrefix()).isEqualTo("foo/bar-");
+    assertThat(parameters.cacheDir()).isEqualTo("/tmp/gapic-cache");
+    assertThat(parameters.cacheMaxBytes()).isEqualTo(1024L);
+    assertThat(PluginParameters.parse("cache-dir=").cacheDir()).isNull();
+  }
+
+  @Test
+  public void parse_metricsReport() {
+    PluginParameters parameters = PluginParameters.parse("metrics-report=/tmp/metrics.json");
+    assertThat(parameters.metricsReport()).isEqualTo("/tmp/metrics.json");
+    assertThat(parameters.outputPrefix()).isEqualTo("");
+  }
+
+  @Test
+  public void parse_srcJarCompression() {
+    PluginParameters parameters =
+        PluginParameters.parse("srcjar-compression=parallel,srcjar-deflate-level=1");
+    assertThat(parameters.srcJarCompression()).isEqualTo(SrcJarWriter.Compression.PARALLEL);
+    assertThat(parameters.srcJarDeflateLevel()).isEqualTo(1);
+    assertThat(PluginParameters.parse("srcjar-compression=stored").srcJarCompression())
+        .isEqualTo(SrcJarWriter.Compression.STORED);
+  }
+
+  @Test
+  public void parse_invalidParameters() {
+    assertThrows(IllegalArgumentException.class, () -> PluginParameters.parse("parallelism=x"));
+    assertThrows(IllegalStateException.class, () -> PluginParameters.parse("parallelism=0"));
+    assertThrows(
+        IllegalArgumentException.class, () -> PluginParameters.parse("lazy-descriptors=yes"));
+    assertThrows(IllegalStateException.class, () -> PluginParameters.parse("spill-threshold=-1"));
+    assertThrows(IllegalStateException.class, () -> PluginParameters.parse("cache-max-bytes=-1"));
+    assertThrows(
+        IllegalArgumentException.class, () -> PluginParameters.parse("srcjar-compression=zstd"));
+    assertThrows(
+        IllegalStateException.class, () -> PluginParameters.parse("srcjar-deflate-level=10"));
+  }
+}
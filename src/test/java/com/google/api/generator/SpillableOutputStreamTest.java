@@ -0,0 +1,88 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+public class SpillableOutputStreamTest {
+  @Test
+  public void writeTo_inMemory() throws IOException {
+    byte[] data = createData(100 * 1024);
+    SpillableOutputStream output = new SpillableOutputStream(Long.MAX_VALUE);
+    writeInPieces(output, data);
+    output.close();
+
+    assertThat(output.isSpilled()).isFalse();
+    assertThat(output.size()).isEqualTo((long) data.length);
+    assertThat(contents(output)).isEqualTo(data);
+    output.discard();
+  }
+
+  @Test
+  public void writeTo_spilled() throws IOException {
+    byte[] data = createData(100 * 1024);
+    SpillableOutputStream output = new SpillableOutputStream(10 * 1024);
+    writeInPieces(output, data);
+
+    assertThat(output.isSpilled()).isTrue();
+    assertThat(output.size()).isEqualTo((long) data.length);
+    // Contents can be read before and after closing the stream.
+    assertThat(contents(output)).isEqualTo(data);
+    output.close();
+    assertThat(contents(output)).isEqualTo(data);
+    output.discard();
+  }
+
+  @Test
+  public void write_afterClose() throws IOException {
+    SpillableOutputStream output = new SpillableOutputStream(Long.MAX_VALUE);
+    output.close();
+    assertThrows(IllegalStateException.class, () -> output.write(1));
+  }
+
+  private static void writeInPieces(SpillableOutputStream output, byte[] data) throws IOException {
+    // Mix single bytes with writes that span chunk boundaries.
+    int position = 0;
+    int pieceSize = 1;
+    while (position < data.length) {
+      int length = Math.min(pieceSize, data.length - position);
+      if (length == 1) {
+        output.write(data[position]);
+      } else {
+        output.write(data, position, length);
+      }
+      position += length;
+      pieceSize = pieceSize * 3 + 1;
+    }
+  }
+
+  private static byte[] contents(SpillableOutputStream output) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    output.writeTo(bytes);
+    return bytes.toByteArray();
+  }
+
+  private static byte[] createData(int size) {
+    byte[] data = new byte[size];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.junit.Test;
+
+public class SrcJarWriterTest {
+  @Test
+  public void write_deflate() throws IOException {
+    byte[] srcJar = writeSrcJar(SrcJarWriter.Compression.DEFLATE, -1, createFiles());
+    assertSrcJarContains(srcJar, createFiles());
+  }
+
+  @Test
+  public void write_stored() throws IOException {
+    byte[] srcJar = writeSrcJar(SrcJarWriter.Compression.STORED, -1, createFiles());
+    assertSrcJarContains(srcJar, createFiles());
+    assertThat(entryMethods(srcJar)).containsExactly(ZipEntry.STORED, ZipEntry.STORED);
+  }
+
+  @Test
+  public void write_parallel() throws IOException {
+    byte[] srcJar = writeSrcJar(SrcJarWriter.Compression.PARALLEL, 9, createFiles());
+    assertSrcJarContains(srcJar, createFiles());
+    // Random bytes do not shrink when deflated, so they are stored.
+    assertThat(entryMethods(srcJar)).containsExactly(ZipEntry.DEFLATED, ZipEntry.STORED).inOrder();
+  }
+
+  @Test
+  public void prepare_crc32OnlyWhenWrittenAhead() throws IOException {
+    GeneratedFile file = createFile("com/google/foo/Foo.java", createCode(0));
+    CRC32 crc32 = new CRC32();
+    crc32.update(file.content().toByteArray());
+
+    SrcJarWriter deflateWriter =
+        SrcJarWriter.create(new ByteArrayOutputStream(), SrcJarWriter.Compression.DEFLATE, -1);
+    assertThat(deflateWriter.prepare(file).crc32()).isEqualTo(SrcJarEntry.NO_CRC32);
+    for (SrcJarWriter.Compression compression :
+        new SrcJarWriter.Compression[] {
+          SrcJarWriter.Compression.STORED, SrcJarWriter.Compression.PARALLEL
+        }) {
+      SrcJarWriter writer = SrcJarWriter.create(new ByteArrayOutputStream(), compression, -1);
+      assertThat(writer.prepare(file).crc32()).isEqualTo(crc32.getValue());
+    }
+  }
+
+  @Test
+  public void write_parallelEmpty() throws IOException {
+    byte[] srcJar = writeSrcJar(SrcJarWriter.Compression.PARALLEL, -1, new ArrayList<>());
+    assertSrcJarContains(srcJar, new ArrayList<>());
+  }
+
+  @Test
+  public void write_parallelPreparedConcurrently() throws IOException {
+    List<GeneratedFile> files = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      files.add(createFile(String.format("com/google/foo/Foo%d.java", i), createCode(i)));
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SrcJarWriter writer = SrcJarWriter.create(output, SrcJarWriter.Compression.PARALLEL, -1);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<ForkJoinTask<SrcJarEntry>> tasks = new ArrayList<>();
+      for (GeneratedFile file : files) {
+        tasks.add(pool.submit(() -> writer.prepare(file)));
+      }
+      for (ForkJoinTask<SrcJarEntry> task : tasks) {
+        writer.write(task.join());
+      }
+      writer.finish();
+    } finally {
+      pool.shutdown();
+    }
+    assertSrcJarContains(output.toByteArray(), files);
+  }
+
+  private static byte[] writeSrcJar(
+      SrcJarWriter.Compression compression, int deflateLevel, List<GeneratedFile> files)
+      throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SrcJarWriter writer = SrcJarWriter.create(output, compression, deflateLevel);
+    for (GeneratedFile file : files) {
+      writer.write(writer.prepare(file));
+    }
+    writer.finish();
+    return output.toByteArray();
+  }
+
+  // Checks the srcjar both as a stream of local entries and through its central directory.
+  private static void assertSrcJarContains(byte[] srcJar, List<GeneratedFile> files)
+      throws IOException {
+    List<GeneratedFile> streamedFiles = new ArrayList<>();
+    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(srcJar))) {
+      for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+        streamedFiles.add(createFile(entry.getName(), ByteStreams.toByteArray(zis)));
+      }
+    }
+    assertThat(streamedFiles).isEqualTo(files);
+
+    List<GeneratedFile> directoryFiles = new ArrayList<>();
+    Path srcJarFile = Files.createTempFile("srcjar", ".srcjar");
+    try {
+      Files.write(srcJarFile, srcJar);
+      try (ZipFile zipFile = new ZipFile(srcJarFile.toFile())) {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          byte[] content = ByteStreams.toByteArray(zipFile.getInputStream(entry));
+          directoryFiles.add(createFile(entry.getName(), content));
+        }
+      }
+    } finally {
+      Files.delete(srcJarFile);
+    }
+    assertThat(directoryFiles).isEqualTo(files);
+  }
+
+  private static List<Integer> entryMethods(byte[] srcJar) throws IOException {
+    List<Integer> methods = new ArrayList<>();
+    try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(srcJar))) {
+      for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+        methods.add(entry.getMethod());
+      }
+    }
+    return methods;
+  }
+
+  private static List<GeneratedFile> createFiles() {
+    byte[] randomBytes = new byte[4096];
+    new Random(42).nextBytes(randomBytes);
+    List<GeneratedFile> files = new ArrayList<>();
+    files.add(createFile("com/google/foo/Foo.java", createCode(0)));
+    files.add(createFile("com/google/foo/random.bin", randomBytes));
+    return files;
+  }
+
+  private static byte[] createCode(int index) {
+    StringBuilder code = new StringBuilder();
+    code.append(String.format("package com.google.foo;\n\npublic class Foo%d {\n", index));
+    for (int i = 0; i < 100; i++) {
+      code.append(String.format("  public int getFoo%d() {\n    return %d;\n  }\n", i, i));
+    }
+    return code.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static GeneratedFile createFile(String path, byte[] content) {
+    return GeneratedFile.builder().setPath(path).setContent(ByteString.copyFrom(content)).build();
+  }
+}
@@ -65,6 +65,33 @@ public class AssignmentExprTest {
     assertValidAssignmentExpr(variableExpr, valueExpr);
   }
 
+  @Test
+  public void assignVaporReferenceValue() {
+    Reference shelfReference =
+        VaporReference.builder()
+            .setPakkage("com.google.example.library.v1")
+            .setSimpleName("Shelf")
+            .build();
+    Variable variable =
+        Variable.builder().setName("x").setType(TypeNode.withReference(shelfReference)).build();
+    VariableExpr variableExpr =
+        VariableExpr.builder().setVariable(variable).setIsDecl(true).build();
+
+    MethodInvocationExpr valueExpr =
+        MethodInvocationExpr.builder()
+            .setMethodName("getShelf")
+            .setReturnType(TypeNode.withReference(shelfReference))
+            .build();
+    assertValidAssignmentExpr(variableExpr, valueExpr);
+
+    MethodInvocationExpr stringValueExpr =
+        MethodInvocationExpr.builder()
+            .setMethodName("getName")
+            .setReturnType(TypeNode.STRING)
+            .build();
+    assertInvalidAssignmentExpr(variableExpr, stringValueExpr);
+  }
+
   @Test
   public void assignMatchingVariable() {
     Variable variable = Variable.builder().setName("x").setType(TypeNode.INT).build();
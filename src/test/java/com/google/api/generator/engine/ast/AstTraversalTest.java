@@ -0,0 +1,295 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+public class AstTraversalTest {
+  @Test
+  public void children_inSourceOrder() {
+    Expr clientExpr = createVariableExpr("client");
+    Expr argExpr = createVariableExpr("request");
+    MethodInvocationExpr methodInvocationExpr =
+        MethodInvocationExpr.builder()
+            .setExprReferenceExpr(clientExpr)
+            .setMethodName("getShelf")
+            .setArguments(Arrays.asList(argExpr))
+            .build();
+
+    assertThat(AstTraversal.children(methodInvocationExpr))
+        .containsExactly(
+            TypeNode.VOID, clientExpr, methodInvocationExpr.methodIdentifier(), argExpr)
+        .inOrder();
+  }
+
+  @Test
+  public void walk_preAndPostOrder() {
+    ClassDefinition classDef =
+        createClass("Library")
+            .setMethods(Arrays.asList(createMethod("getShelf"), createMethod("getBook")))
+            .build();
+    List<String> events = new ArrayList<>();
+
+    AstTraversal.walk(
+        classDef,
+        new AstTraversal.Listener() {
+          @Override
+          public boolean enter(AstNode node) {
+            events.add("enter " + nameOf(node));
+            return true;
+          }
+
+          @Override
+          public void exit(AstNode node) {
+            events.add("exit " + nameOf(node));
+          }
+        });
+
+    assertThat(events)
+        .containsAllOf(
+            "enter Library",
+            "enter getShelf",
+            "exit getShelf",
+            "enter getBook",
+            "exit getBook",
+            "exit Library")
+        .inOrder();
+    assertThat(events.get(0)).isEqualTo("enter Library");
+    assertThat(events.get(events.size() - 1)).isEqualTo("exit Library");
+  }
+
+  @Test
+  public void walk_skipsChildren() {
+    ClassDefinition classDef =
+        createClass("Library").setMethods(Arrays.asList(createMethod("getShelf"))).build();
+    List<AstNode> entered = new ArrayList<>();
+
+    AstTraversal.walk(
+        classDef,
+        new AstTraversal.Listener() {
+          @Override
+          public boolean enter(AstNode node) {
+            entered.add(node);
+            return !(node instanceof MethodDefinition);
+          }
+        });
+
+    assertThat(entered).contains(classDef.methods().get(0));
+    assertThat(entered).doesNotContain(classDef.methods().get(0).methodIdentifier());
+  }
+
+  @Test
+  public void fuse_matchesSeparateWalks() {
+    ClassDefinition classDef =
+        createClass("Library")
+            .setStatements(
+                Arrays.asList(
+                    ExprStatement.withExpr(
+                        VariableExpr.builder()
+                            .setVariable(
+                                Variable.builder().setName("shelf").setType(TypeNode.INT).build())
+                            .setIsDecl(true)
+                            .setScope(ScopeNode.PRIVATE)
+                            .build())))
+            .setMethods(Arrays.asList(createMethod("getShelf"), createMethod("getBook")))
+            .build();
+    EventRecorder allNodes = new EventRecorder(null);
+    EventRecorder skipsMethods = new EventRecorder(MethodDefinition.class);
+    EventRecorder skipsClass = new EventRecorder(ClassDefinition.class);
+    AstTraversal.walk(classDef, allNodes);
+    AstTraversal.walk(classDef, skipsMethods);
+    AstTraversal.walk(classDef, skipsClass);
+
+    EventRecorder fusedAllNodes = new EventRecorder(null);
+    EventRecorder fusedSkipsMethods = new EventRecorder(MethodDefinition.class);
+    EventRecorder fusedSkipsClass = new EventRecorder(ClassDefinition.class);
+    AstTraversal.walk(
+        classDef, AstTraversal.fuse(fusedSkipsMethods, fusedAllNodes, fusedSkipsClass));
+
+    assertThat(fusedAllNodes.events).containsExactlyElementsIn(allNodes.events).inOrder();
+    assertThat(fusedSkipsMethods.events).containsExactlyElementsIn(skipsMethods.events).inOrder();
+    assertThat(fusedSkipsClass.events).containsExactly("enter Library");
+  }
+
+  @Test
+  public void fuse_allListenersSkip() {
+    ClassDefinition classDef =
+        createClass("Library").setMethods(Arrays.asList(createMethod("getShelf"))).build();
+    EventRecorder first = new EventRecorder(MethodDefinition.class);
+    EventRecorder second = new EventRecorder(MethodDefinition.class);
+
+    AstTraversal.walk(classDef, AstTraversal.fuse(first, second));
+
+    assertThat(first.events).contains("enter getShelf");
+    assertThat(first.events).doesNotContain("exit getShelf");
+    assertThat(first.events.get(first.events.size() - 1)).isEqualTo("exit Library");
+    assertThat(second.events).containsExactlyElementsIn(first.events).inOrder();
+  }
+
+  @Test
+  public void walkParallel_combinesInSourceOrder() {
+    ClassDefinition nestedClass =
+        createClass("Shelf")
+            .setIsNested(true)
+            .setMethods(Arrays.asList(createMethod("getBook")))
+            .build();
+    ClassDefinition classDef =
+        createClass("Library")
+            .setMethods(Arrays.asList(createMethod("getShelf"), createMethod("listShelves")))
+            .setNestedClasses(Arrays.asList(nestedClass))
+            .build();
+
+    ImmutableList<String> names =
+        AstTraversal.walkParallel(
+            classDef,
+            new NameCollector(),
+            (first, second) -> ImmutableList.<String>builder().addAll(first).addAll(second).build(),
+            new ForkJoinPool(2));
+
+    assertThat(names)
+        .containsExactly("Library", "getShelf", "listShelves", "Shelf", "getBook")
+        .inOrder();
+  }
+
+  @Test
+  public void walkParallel_exitsClassAfterForkedSubtrees() {
+    ClassDefinition nestedClass =
+        createClass("Shelf")
+            .setIsNested(true)
+            .setMethods(Arrays.asList(createMethod("getBook")))
+            .build();
+    ClassDefinition classDef =
+        createClass("Library")
+            .setMethods(Arrays.asList(createMethod("getShelf"), createMethod("listShelves")))
+            .setNestedClasses(Arrays.asList(nestedClass))
+            .build();
+    List<String> exits = Collections.synchronizedList(new ArrayList<>());
+
+    AstTraversal.walkParallel(
+        classDef, new ExitRecorder(exits), (first, second) -> null, new ForkJoinPool(4));
+
+    assertThat(exits).hasSize(5);
+    assertThat(exits.get(4)).isEqualTo("Library");
+    assertThat(exits.indexOf("Shelf")).isGreaterThan(exits.indexOf("getBook"));
+  }
+
+  /** Records enter and exit events, and skips the children of nodes of the given type. */
+  private static class EventRecorder implements AstTraversal.Listener {
+    private final Class<?> skippedType;
+    private final List<String> events = new ArrayList<>();
+
+    EventRecorder(Class<?> skippedType) {
+      this.skippedType = skippedType;
+    }
+
+    @Override
+    public boolean enter(AstNode node) {
+      events.add("enter " + nameOf(node));
+      return skippedType == null || !skippedType.isInstance(node);
+    }
+
+    @Override
+    public void exit(AstNode node) {
+      events.add("exit " + nameOf(node));
+    }
+  }
+
+  private static class NameCollector implements AstTraversal.Analysis<ImmutableList<String>> {
+    private final List<String> names = new ArrayList<>();
+
+    @Override
+    public boolean enter(AstNode node) {
+      if (node instanceof ClassDefinition || node instanceof MethodDefinition) {
+        names.add(nameOf(node));
+      }
+      return true;
+    }
+
+    @Override
+    public AstTraversal.Analysis<ImmutableList<String>> fork(AstNode subtree) {
+      return new NameCollector();
+    }
+
+    @Override
+    public ImmutableList<String> result() {
+      return ImmutableList.copyOf(names);
+    }
+  }
+
+  /** Records the exits of classes and methods, from all forks, in the order they happen. */
+  private static class ExitRecorder implements AstTraversal.Analysis<Void> {
+    private final List<String> exits;
+
+    ExitRecorder(List<String> exits) {
+      this.exits = exits;
+    }
+
+    @Override
+    public void exit(AstNode node) {
+      if (node instanceof ClassDefinition || node instanceof MethodDefinition) {
+        exits.add(nameOf(node));
+      }
+    }
+
+    @Override
+    public AstTraversal.Analysis<Void> fork(AstNode subtree) {
+      return new ExitRecorder(exits);
+    }
+
+    @Override
+    public Void result() {
+      return null;
+    }
+  }
+
+  private static String nameOf(AstNode node) {
+    if (node instanceof ClassDefinition) {
+      return ((ClassDefinition) node).classIdentifier().name();
+    }
+    if (node instanceof MethodDefinition) {
+      return ((MethodDefinition) node).methodIdentifier().name();
+    }
+    return node.getClass().getSimpleName();
+  }
+
+  private static ClassDefinition.Builder createClass(String name) {
+    return ClassDefinition.builder()
+        .setPackageString("com.google.example.library.v1")
+        .setName(name)
+        .setScope(ScopeNode.PUBLIC);
+  }
+
+  private static MethodDefinition createMethod(String name) {
+    return MethodDefinition.builder()
+        .setName(name)
+        .setScope(ScopeNode.PUBLIC)
+        .setReturnType(TypeNode.VOID)
+        .build();
+  }
+
+  private static VariableExpr createVariableExpr(String name) {
+    return VariableExpr.builder()
+        .setVariable(Variable.builder().setName(name).setType(TypeNode.STRING).build())
+        .build();
+  }
+}
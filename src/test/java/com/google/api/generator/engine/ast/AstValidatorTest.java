@@ -0,0 +1,155 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AstValidatorTest {
+  @Test
+  public void eagerChecks_areDefault() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> createMethod("close").setIsAbstract(true).setIsFinal(true).build());
+  }
+
+  @Test
+  public void deferredScope_restoresEagerChecksOnClose() throws Exception {
+    try (AstValidator.Scope outer = AstValidator.deferred()) {
+      try (AstValidator.Scope inner = AstValidator.deferred()) {
+        createMethod("close").setIsAbstract(true).setIsFinal(true).build();
+      }
+      createMethod("close").setIsAbstract(true).setIsFinal(true).build();
+
+      // Other threads keep checking eagerly.
+      ForkJoinPool pool = new ForkJoinPool(1);
+      try {
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                pool.submit(
+                        () -> createMethod("close").setIsAbstract(true).setIsFinal(true).build())
+                    .get());
+      } finally {
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+      }
+    }
+    assertThat(AstValidator.checksEagerly()).isTrue();
+  }
+
+  @Test
+  public void deferredScope_validTree() {
+    ClassDefinition classDef;
+    try (AstValidator.Scope scope = AstValidator.deferred()) {
+      classDef =
+          createClass("LibraryServiceStub")
+              .setPackageString("com.google.example.library.v1.stub")
+              .setStatements(Arrays.asList(ExprStatement.withExpr(createAssignment(TypeNode.INT))))
+              .setMethods(Arrays.asList(createMethod("close").build()))
+              .build();
+    }
+
+    assertThat(AstValidator.collectViolations(classDef, ForkJoinPool.commonPool())).isEmpty();
+    AstValidator.validate(classDef);
+  }
+
+  @Test
+  public void deferredScope_reportsAllViolations() throws InterruptedException {
+    ClassDefinition classDef;
+    try (AstValidator.Scope scope = AstValidator.deferred()) {
+      MethodDefinition abstractFinalMethod =
+          createMethod("close").setIsAbstract(true).setIsFinal(true).build();
+      MethodDefinition mistypedMethod =
+          createMethod("shutdown")
+              .setBody(
+                  Arrays.asList(ExprStatement.withExpr(createAssignment(TypeNode.BOOLEAN))))
+              .build();
+      ClassDefinition nestedClass =
+          createClass("Settings").setIsNested(true).setIsAbstract(true).setIsFinal(true).build();
+      // No package, and the class cannot be static.
+      classDef =
+          createClass("LibraryServiceStub")
+              .setIsStatic(true)
+              .setMethods(Arrays.asList(abstractFinalMethod, mistypedMethod))
+              .setNestedClasses(Arrays.asList(nestedClass))
+              .build();
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    AstValidationException e;
+    try {
+      e = assertThrows(AstValidationException.class, () -> AstValidator.validate(classDef, pool));
+    } finally {
+      pool.shutdown();
+      pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    assertThat(e.violations())
+        .containsExactly(
+            "LibraryServiceStub: Outer classes must have a package name defined",
+            "LibraryServiceStub: Outer classes cannot be static",
+            "LibraryServiceStub.close: Abstract mehtods cannot be static, final, or private",
+            String.format(
+                "LibraryServiceStub.shutdown: LHS type %s must match RHS type %s",
+                TypeNode.BOOLEAN, TypeNode.INT),
+            "LibraryServiceStub.Settings: Abstract classes cannot be marked final")
+        .inOrder();
+  }
+
+  @Test
+  public void deferredScope_nonClassRoot() {
+    TryCatchStatement tryCatch;
+    try (AstValidator.Scope scope = AstValidator.deferred()) {
+      tryCatch = TryCatchStatement.builder().setTryBody(Collections.emptyList()).build();
+    }
+
+    assertThat(AstValidator.collectViolations(tryCatch, ForkJoinPool.commonPool()))
+        .containsExactly(
+            "Catch variable expression must be set for real, non-sample try-catch blocks.");
+  }
+
+  private static ClassDefinition.Builder createClass(String name) {
+    return ClassDefinition.builder().setName(name).setScope(ScopeNode.PUBLIC);
+  }
+
+  private static MethodDefinition.Builder createMethod(String name) {
+    return MethodDefinition.builder()
+        .setName(name)
+        .setScope(ScopeNode.PUBLIC)
+        .setReturnType(TypeNode.VOID);
+  }
+
+  private static AssignmentExpr createAssignment(TypeNode variableType) {
+    Variable variable = Variable.builder().setName("x").setType(variableType).build();
+    VariableExpr variableExpr =
+        VariableExpr.builder()
+            .setVariable(variable)
+            .setIsDecl(true)
+            .setScope(ScopeNode.PRIVATE)
+            .build();
+    Value value = PrimitiveValue.builder().setType(TypeNode.INT).setValue("3").build();
+    return AssignmentExpr.builder()
+        .setVariableExpr(variableExpr)
+        .setValueExpr(ValueExpr.builder().setValue(value).build())
+        .build();
+  }
+}
@@ -18,6 +18,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import com.google.api.generator.engine.ast.IdentifierNode.InvalidIdentifierException;
+import com.google.common.cache.CacheStats;
 import org.junit.Test;
 
 public class IdentifierNodeTest {
@@ -104,6 +105,22 @@ public class IdentifierNodeTest {
     assertInvalidIdentifier("implements");
   }
 
+  @Test
+  public void createIdentifier_pooledByName() {
+    IdentifierNode identifier = IdentifierNode.builder().setName("pooledSettings").build();
+    CacheStats statsBefore = IdentifierNode.poolStats();
+    assertThat(IdentifierNode.builder().setName("pooledSettings").build())
+        .isSameAs(identifier);
+    assertThat(IdentifierNode.poolStats().minus(statsBefore).hitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void createIdentifier_invalidNamesAreNotPooled() {
+    assertInvalidIdentifier("pooled.settings");
+    // Invalid names are revalidated, and still throw the unwrapped exception.
+    assertInvalidIdentifier("pooled.settings");
+  }
+
   private static void assertInvalidIdentifier(String idName) {
     assertThrows(
         InvalidIdentifierException.class,
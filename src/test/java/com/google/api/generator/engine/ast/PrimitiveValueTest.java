@@ -39,10 +39,36 @@ public class PrimitiveValueTest {
   }
 
   @Test
-  public void createPrimitiveValue_unsupported() {
+  public void createPrimitiveValue_byteAndShort() {
+    assertValidValue(TypeKind.BYTE, "0");
+    assertValidValue(TypeKind.BYTE, "127");
+    assertValidValue(TypeKind.SHORT, "1");
+    assertValidValue(TypeKind.SHORT, "32767");
+
+    assertInvalidValue(TypeKind.BYTE, "128");
     assertInvalidValue(TypeKind.BYTE, "0x2");
-    assertInvalidValue(TypeKind.SHORT, "1");
+    assertInvalidValue(TypeKind.SHORT, "32768");
+    assertInvalidValue(TypeKind.SHORT, "99999999999999999999");
+    assertInvalidValue(TypeKind.SHORT, "1L");
+  }
+
+  @Test
+  public void createPrimitiveValue_char() {
+    assertValidValue(TypeKind.CHAR, "'a'");
+    assertValidValue(TypeKind.CHAR, "'\\n'");
+    assertValidValue(TypeKind.CHAR, "'\\''");
+    assertValidValue(TypeKind.CHAR, "'\\\\'");
+    assertValidValue(TypeKind.CHAR, "'\\101'");
+    assertValidValue(TypeKind.CHAR, "'\\u00e9'");
+
     assertInvalidValue(TypeKind.CHAR, "a");
+    assertInvalidValue(TypeKind.CHAR, "''");
+    assertInvalidValue(TypeKind.CHAR, "'ab'");
+    assertInvalidValue(TypeKind.CHAR, "'''");
+    assertInvalidValue(TypeKind.CHAR, "'\\'");
+    assertInvalidValue(TypeKind.CHAR, "'\\q'");
+    assertInvalidValue(TypeKind.CHAR, "'\\400'");
+    assertInvalidValue(TypeKind.CHAR, "'\\u00e'");
   }
 
   private static void assertValidValue(TypeKind typeKind, String value) {
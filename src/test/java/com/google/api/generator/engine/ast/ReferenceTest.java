@@ -16,22 +16,26 @@ package com.google.api.generator.engine.ast;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import org.junit.Test;
 
 public class ReferenceTest {
   @Test
   public void basicReference() {
-    Reference reference = Reference.builder().setClazz(Integer.class).build();
+    Reference reference = ConcreteReference.builder().setClazz(Integer.class).build();
     assertThat(reference.name()).isEqualTo(Integer.class.getSimpleName());
   }
 
   @Test
   public void parameterizedReference() {
     Reference reference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(HashMap.class)
             .setGenerics(
                 Arrays.asList(
@@ -43,23 +47,93 @@ public class ReferenceTest {
   @Test
   public void nestedParameterizedReference() {
     Reference mapReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(HashMap.class)
             .setGenerics(
                 Arrays.asList(
                     Reference.withClazz(String.class), Reference.withClazz(Integer.class)))
             .build();
     Reference outerMapReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(HashMap.class)
             .setGenerics(Arrays.asList(mapReference, mapReference))
             .build();
     Reference listReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(List.class)
             .setGenerics(Arrays.asList(outerMapReference))
             .build();
     assertThat(listReference.name())
         .isEqualTo("List<HashMap<HashMap<String, Integer>, HashMap<String, Integer>>>");
   }
+
+  @Test
+  public void name_isComputedOnce() {
+    Reference reference =
+        ConcreteReference.builder()
+            .setClazz(List.class)
+            .setGenerics(Arrays.asList(createMapReference(String.class, Long.class)))
+            .build();
+    assertThat(reference.name()).isEqualTo("List<HashMap<String, Long>>");
+    assertThat(reference.name()).isSameAs(reference.name());
+  }
+
+  @Test
+  public void withClazz_returnsSameInstance() {
+    assertThat(Reference.withClazz(String.class))
+        .isSameAs(Reference.withClazz(String.class));
+    assertThat(ConcreteReference.builder().setClazz(String.class).build())
+        .isSameAs(Reference.withClazz(String.class));
+    assertThat(Reference.withClazz(String.class))
+        .isNotSameAs(Reference.withClazz(Integer.class));
+  }
+
+  @Test
+  public void builder_structurallyEqualReferencesAreInterned() {
+    Reference reference = createMapReference(String.class, Integer.class);
+    assertThat(createMapReference(String.class, Integer.class)).isSameAs(reference);
+    assertThat(createMapReference(Integer.class, String.class)).isNotSameAs(reference);
+    assertThat(createMapReference(Integer.class, String.class)).isNotEqualTo(reference);
+  }
+
+  @Test
+  public void builder_copiesGenerics() {
+    List<Reference> generics = new ArrayList<>(Arrays.asList(Reference.withClazz(String.class)));
+    Reference reference =
+        ConcreteReference.builder().setClazz(List.class).setGenerics(generics).build();
+    generics.set(0, Reference.withClazz(Integer.class));
+
+    assertThat(reference.generics()).containsExactly(Reference.withClazz(String.class));
+    assertThat(reference.name()).isEqualTo("List<String>");
+    assertThat(
+            ConcreteReference.builder()
+                .setClazz(List.class)
+                .setGenerics(Arrays.asList(Reference.withClazz(String.class)))
+                .build())
+        .isSameAs(reference);
+  }
+
+  @Test
+  public void builder_syntheticApiAllocatesOneReferencePerType() {
+    // Each of the 1000 methods of a synthetic API refers to the same handful of types.
+    Set<Reference> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < 1000; i++) {
+      instances.add(Reference.withClazz(String.class));
+      instances.add(
+          ConcreteReference.builder()
+              .setClazz(List.class)
+              .setGenerics(Arrays.asList(Reference.withClazz(String.class)))
+              .build());
+      instances.add(createMapReference(String.class, Integer.class));
+      instances.add(Reference.withClazz(IllegalArgumentException.class));
+    }
+    assertThat(instances).hasSize(4);
+  }
+
+  private static Reference createMapReference(Class keyClazz, Class valueClazz) {
+    return ConcreteReference.builder()
+        .setClazz(HashMap.class)
+        .setGenerics(Arrays.asList(Reference.withClazz(keyClazz), Reference.withClazz(valueClazz)))
+        .build();
+  }
 }
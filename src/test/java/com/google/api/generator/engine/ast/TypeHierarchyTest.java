@@ -0,0 +1,122 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class TypeHierarchyTest {
+  private static final String PACKAGE = "com.google.example.library.v1";
+
+  @Test
+  public void isSubtype_concreteReferences() {
+    TypeHierarchy hierarchy = new TypeHierarchy(100);
+    assertThat(
+            hierarchy.isSubtype(
+                Reference.withClazz(ArrayList.class), Reference.withClazz(List.class)))
+        .isTrue();
+    assertThat(
+            hierarchy.isSubtype(
+                Reference.withClazz(List.class), Reference.withClazz(ArrayList.class)))
+        .isFalse();
+    assertThat(
+            hierarchy.isSubtype(
+                Reference.withClazz(String.class), Reference.withClazz(Object.class)))
+        .isTrue();
+  }
+
+  @Test
+  public void isSubtype_declaredSupertypes() {
+    TypeHierarchy hierarchy = new TypeHierarchy(100);
+    VaporReference baseReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("AbstractShelfList")
+            .setSupertypes(Arrays.asList(Reference.withClazz(AbstractList.class)))
+            .build();
+    VaporReference shelfListReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("ShelfList")
+            .setSupertypes(Arrays.asList(baseReference))
+            .build();
+
+    assertThat(hierarchy.isSubtype(shelfListReference, baseReference)).isTrue();
+    assertThat(hierarchy.isSubtype(shelfListReference, Reference.withClazz(List.class))).isTrue();
+    assertThat(hierarchy.isSubtype(shelfListReference, Reference.withClazz(Object.class)))
+        .isTrue();
+    assertThat(hierarchy.isSubtype(baseReference, shelfListReference)).isFalse();
+    assertThat(hierarchy.isSubtype(shelfListReference, Reference.withClazz(ArrayList.class)))
+        .isFalse();
+    assertThat(hierarchy.isSubtype(Reference.withClazz(ArrayList.class), baseReference)).isFalse();
+  }
+
+  @Test
+  public void isSubtype_concreteReferencesAreNotCached() {
+    TypeHierarchy hierarchy = new TypeHierarchy(100);
+    for (int i = 0; i < 10; i++) {
+      hierarchy.isSubtype(Reference.withClazz(ArrayList.class), Reference.withClazz(List.class));
+    }
+    assertThat(hierarchy.stats().requestCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void isSubtype_cachesErasedVaporSupertypes() {
+    TypeHierarchy hierarchy = new TypeHierarchy(100);
+    VaporReference baseReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("AbstractShelfList")
+            .setSupertypes(Arrays.asList(Reference.withClazz(AbstractList.class)))
+            .build();
+    VaporReference shelfListReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("ShelfList")
+            .setSupertypes(Arrays.asList(baseReference))
+            .build();
+    VaporReference genericShelfListReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("ShelfList")
+            .setGenerics(Arrays.asList(Reference.withClazz(String.class)))
+            .setSupertypes(Arrays.asList(baseReference))
+            .build();
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(hierarchy.isSubtype(shelfListReference, Reference.withClazz(List.class))).isTrue();
+      assertThat(hierarchy.isSubtype(genericShelfListReference, baseReference)).isTrue();
+    }
+    // One walk for ShelfList and one for AbstractShelfList; every other check hits the cache.
+    assertThat(hierarchy.stats().missCount()).isEqualTo(2L);
+    assertThat(hierarchy.stats().hitCount()).isEqualTo(9L);
+  }
+
+  @Test
+  public void isExceptionType_declaredExceptionSupertype() {
+    VaporReference exceptionReference =
+        VaporReference.builder()
+            .setPakkage(PACKAGE)
+            .setSimpleName("ShelfNotFoundException")
+            .setSupertypes(Arrays.asList(Reference.withClazz(IllegalStateException.class)))
+            .build();
+    assertThat(TypeNode.isExceptionType(TypeNode.withReference(exceptionReference))).isTrue();
+  }
+}
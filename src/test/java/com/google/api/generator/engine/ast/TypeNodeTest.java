@@ -0,0 +1,66 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class TypeNodeTest {
+  @Test
+  public void withReference_returnsSameInstance() {
+    assertThat(TypeNode.withReference(Reference.withClazz(String.class)))
+        .isSameAs(TypeNode.STRING);
+    assertThat(TypeNode.builder().setTypeKind(TypeNode.TypeKind.INT).build())
+        .isSameAs(TypeNode.INT);
+    assertThat(TypeNode.withExceptionClazz(IllegalStateException.class))
+        .isSameAs(TypeNode.withExceptionClazz(IllegalStateException.class));
+  }
+
+  @Test
+  public void builder_distinguishesArrays() {
+    TypeNode stringArray =
+        TypeNode.builder()
+            .setTypeKind(TypeNode.TypeKind.OBJECT)
+            .setReference(Reference.withClazz(String.class))
+            .setIsArray(true)
+            .build();
+    assertThat(stringArray).isSameAs(TypeNode.STRING_ARRAY);
+    assertThat(stringArray).isNotEqualTo(TypeNode.STRING);
+  }
+
+  @Test
+  public void builder_syntheticApiAllocatesOneTypePerType() {
+    // Each of the 1000 methods of a synthetic API has the same parameter, return and thrown types.
+    Set<TypeNode> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int i = 0; i < 1000; i++) {
+      instances.add(TypeNode.withReference(Reference.withClazz(String.class)));
+      instances.add(
+          TypeNode.withReference(
+              ConcreteReference.builder()
+                  .setClazz(List.class)
+                  .setGenerics(Arrays.asList(Reference.withClazz(String.class)))
+                  .build()));
+      instances.add(TypeNode.withExceptionClazz(IllegalArgumentException.class));
+      instances.add(TypeNode.builder().setTypeKind(TypeNode.TypeKind.INT).build());
+    }
+    assertThat(instances).hasSize(4);
+  }
+}
@@ -0,0 +1,83 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.ast;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class VaporReferenceTest {
+  @Test
+  public void basicReference() {
+    VaporReference reference =
+        VaporReference.builder()
+            .setPakkage("com.google.example.library.v1")
+            .setSimpleName("Shelf")
+            .build();
+    assertThat(reference.name()).isEqualTo("Shelf");
+    assertThat(reference.fullName()).isEqualTo("com.google.example.library.v1.Shelf");
+    assertThat(reference.enclosingClassName()).isNull();
+    assertThat(reference.isFromPackage("com.google.example.library.v1")).isTrue();
+  }
+
+  @Test
+  public void nestedParameterizedReference() {
+    VaporReference reference =
+        VaporReference.builder()
+            .setPakkage("com.google.example.library.v1")
+            .setEnclosingClassName("LibraryClient")
+            .setSimpleName("ListShelvesPage")
+            .setGenerics(Arrays.asList(Reference.withClazz(String.class)))
+            .build();
+    assertThat(reference.name()).isEqualTo("ListShelvesPage<String>");
+    assertThat(reference.fullName())
+        .isEqualTo("com.google.example.library.v1.LibraryClient.ListShelvesPage");
+  }
+
+  @Test
+  public void builder_structurallyEqualReferencesAreInterned() {
+    assertThat(createShelfReference()).isSameAs(createShelfReference());
+  }
+
+  @Test
+  public void isAssignableFrom() {
+    Reference shelfReference = createShelfReference();
+    assertThat(shelfReference.isAssignableFrom(createShelfReference())).isTrue();
+    assertThat(shelfReference.isAssignableFrom(Reference.withClazz(String.class))).isFalse();
+    assertThat(Reference.withClazz(Object.class).isAssignableFrom(shelfReference)).isTrue();
+    assertThat(Reference.withClazz(List.class).isAssignableFrom(shelfReference)).isFalse();
+  }
+
+  @Test
+  public void invalidReference() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            VaporReference.builder().setPakkage("com.google").setSimpleName("Foo.Bar").build());
+    assertThrows(
+        IllegalStateException.class,
+        () -> VaporReference.builder().setPakkage("").setSimpleName("Foo").build());
+  }
+
+  private static VaporReference createShelfReference() {
+    return VaporReference.builder()
+        .setPakkage("com.google.example.library.v1")
+        .setSimpleName("Shelf")
+        .build();
+  }
+}
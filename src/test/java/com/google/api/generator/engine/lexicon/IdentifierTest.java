@@ -0,0 +1,103 @@
+// Copyright 2020 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.generator.engine.lexicon;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.generator.engine.lexicon.Identifier.Violation;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class IdentifierTest {
+  private static final Pattern NUMERIC_PATTERN = Pattern.compile("^[0-9]");
+
+  private static final String ALPHABET =
+      "abcdefghijklmnopqrstuvwxyzABCXYZ_0123456789#`~'\"\\,$+-*/%=!&|<>?:^[]{}().;@ \t\n"
+          + "\u00e9\u03bb\u2713\u4e2d\ud83d\ude00";
+  private static final String[] WORDS = {
+    "true", "false", "null", "int", "class", "while", "goto", "const", "var", "foo", "1", "2.5f"
+  };
+
+  @Test
+  public void check_validNames() {
+    assertThat(Identifier.check("foo")).isEqualTo(Violation.NONE);
+    assertThat(Identifier.check("FooBar_2")).isEqualTo(Violation.NONE);
+    assertThat(Identifier.check("_")).isEqualTo(Violation.NONE);
+    assertThat(Identifier.check("Class")).isEqualTo(Violation.NONE);
+    assertThat(Identifier.check("nulls")).isEqualTo(Violation.NONE);
+    assertThat(Identifier.check("caf\u00e9")).isEqualTo(Violation.NONE);
+  }
+
+  @Test
+  public void check_violations() {
+    assertThat(Identifier.check("")).isEqualTo(Violation.EMPTY);
+    assertThat(Identifier.check("2foo")).isEqualTo(Violation.STARTS_WITH_DIGIT);
+    assertThat(Identifier.check("123")).isEqualTo(Violation.STARTS_WITH_DIGIT);
+    assertThat(Identifier.check("true")).isEqualTo(Violation.LITERAL);
+    assertThat(Identifier.check("null")).isEqualTo(Violation.LITERAL);
+    assertThat(Identifier.check("foo.bar")).isEqualTo(Violation.NON_ALPHANUMERIC_CHARACTER);
+    assertThat(Identifier.check("a$b")).isEqualTo(Violation.NON_ALPHANUMERIC_CHARACTER);
+    assertThat(Identifier.check("x+y")).isEqualTo(Violation.NON_ALPHANUMERIC_CHARACTER);
+    assertThat(Identifier.check("static")).isEqualTo(Violation.KEYWORD);
+  }
+
+  @Test
+  public void check_matchesRegexChecks() {
+    Random random = new Random(20200715);
+    for (int i = 0; i < 200000; i++) {
+      String name = randomName(random);
+      assertThat(Identifier.check(name)).isEqualTo(checkWithRegexes(name));
+    }
+  }
+
+  private static String randomName(Random random) {
+    StringBuilder name = new StringBuilder();
+    int parts = random.nextInt(4);
+    for (int i = 0; i < parts; i++) {
+      if (random.nextInt(3) == 0) {
+        name.append(WORDS[random.nextInt(WORDS.length)]);
+      } else {
+        int length = random.nextInt(4);
+        for (int j = 0; j < length; j++) {
+          name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+      }
+    }
+    return name.toString();
+  }
+
+  // The checks IdentifierNode made before the single-pass scanner.
+  private static Violation checkWithRegexes(String name) {
+    if (name.isEmpty()) {
+      return Violation.EMPTY;
+    }
+    if (NUMERIC_PATTERN.matcher(name.substring(0, 1)).matches()) {
+      return Violation.STARTS_WITH_DIGIT;
+    }
+    if (Literal.isLiteral(name)) {
+      return Violation.LITERAL;
+    }
+    if (InvalidSymbol.containsInvalidSymbol(name)
+        || Operator.containsOperator(name)
+        || Separator.containsSeparator(name)) {
+      return Violation.NON_ALPHANUMERIC_CHARACTER;
+    }
+    if (Keyword.isKeyword(name)) {
+      return Violation.KEYWORD;
+    }
+    return Violation.NONE;
+  }
+}
@@ -15,10 +15,21 @@
 package com.google.api.generator.engine.lexicon;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
 
+import java.util.regex.Pattern;
 import org.junit.Test;
 
 public class LiteralTest {
+  // The patterns Literal used before its numeric automaton.
+  private static final Pattern INTEGER_PATTERN = Pattern.compile("^[0-9]+$");
+  private static final Pattern LONG_PATTERN = Pattern.compile("^[0-9]+[Ll]?$");
+  private static final Pattern FLOAT_PATTERN =
+      Pattern.compile("^[0-9]+([fF]|(\\.(([0-9]+[fF])|[fF])))?$");
+  private static final Pattern DOUBLE_PATTERN =
+      Pattern.compile("^[0-9]+(\\.[0-9]+)?(\\.?[eE]\\-?[0-9]+)$");
+  private static final Pattern INVALID_OCTAL_PATTERN = Pattern.compile("^0[0-9]*[89][0-9]*[Ll]?$");
+
   @Test
   public void booleanDetected() {
     assertThat(Literal.isBooleanLiteral("True")).isFalse();
@@ -74,6 +85,97 @@ public class LiteralTest {
     assertThat(Literal.isDoubleLiteral("123E-")).isFalse();
   }
 
+  @Test
+  public void byteAndShortDetected() {
+    assertThat(Literal.isByteLiteral("127")).isTrue();
+    assertThat(Literal.isByteLiteral("0127")).isTrue();
+    assertThat(Literal.isByteLiteral("0177")).isTrue();
+    assertThat(Literal.isByteLiteral("0200")).isFalse();
+    assertThat(Literal.isByteLiteral("0128")).isFalse();
+    assertThat(Literal.isByteLiteral("128")).isFalse();
+    assertThat(Literal.isShortLiteral("077777")).isTrue();
+    assertThat(Literal.isShortLiteral("0100000")).isFalse();
+    assertThat(Literal.isShortLiteral("32767")).isTrue();
+    assertThat(Literal.isShortLiteral("32768")).isFalse();
+    assertThat(Literal.isShortLiteral("12L")).isFalse();
+  }
+
+  @Test
+  public void intAndLongRangeDetected() {
+    assertThat(Literal.isIntegerLiteral("2147483647")).isTrue();
+    assertThat(Literal.isIntegerLiteral("2147483648")).isFalse();
+    assertThat(Literal.isIntegerLiteral("037777777777")).isTrue();
+    assertThat(Literal.isIntegerLiteral("040000000000")).isFalse();
+    assertThat(Literal.isIntegerLiteral("0777777777777")).isFalse();
+    assertThat(Literal.isIntegerLiteral("08")).isFalse();
+
+    assertThat(Literal.isLongLiteral("9223372036854775807L")).isTrue();
+    assertThat(Literal.isLongLiteral("9223372036854775808L")).isFalse();
+    assertThat(Literal.isLongLiteral("0777777777777")).isTrue();
+    assertThat(Literal.isLongLiteral("01777777777777777777777L")).isTrue();
+    assertThat(Literal.isLongLiteral("02000000000000000000000L")).isFalse();
+    assertThat(Literal.isLongLiteral("017777777777777777777777")).isFalse();
+    assertThat(Literal.isLongLiteral("09L")).isFalse();
+
+    // Out of range whole numbers are still floating point literals.
+    assertThat(Literal.isDoubleLiteral("0777777777777")).isTrue();
+    assertThat(Literal.isLiteral("9223372036854775808L")).isFalse();
+  }
+
+  @Test
+  public void charDetected() {
+    assertThat(Literal.isCharLiteral("'a'")).isTrue();
+    assertThat(Literal.isCharLiteral("'\"'")).isTrue();
+    assertThat(Literal.isCharLiteral("'\\t'")).isTrue();
+    assertThat(Literal.isCharLiteral("'\\0'")).isTrue();
+    assertThat(Literal.isCharLiteral("'\\377'")).isTrue();
+    assertThat(Literal.isCharLiteral("'\\uuu0041'")).isTrue();
+
+    assertThat(Literal.isCharLiteral("a")).isFalse();
+    assertThat(Literal.isCharLiteral("'a")).isFalse();
+    assertThat(Literal.isCharLiteral("'\n'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\8'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\1234'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\u004G'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\u0027'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\u005c'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\u000a'")).isFalse();
+    assertThat(Literal.isCharLiteral("'\\u000D'")).isFalse();
+  }
+
+  @Test
+  public void numericLiteralsMatchRegexes() {
+    // Every string of up to six characters over the symbols that appear in numeric literals.
+    char[] symbols = {'0', '9', '.', 'e', 'E', 'f', 'F', 'l', 'L', '-', 'x'};
+    char[] chars = new char[6];
+    for (int length = 0; length <= chars.length; length++) {
+      int combinations = (int) Math.pow(symbols.length, length);
+      for (int n = 0; n < combinations; n++) {
+        int rest = n;
+        for (int i = 0; i < length; i++) {
+          chars[i] = symbols[rest % symbols.length];
+          rest /= symbols.length;
+        }
+        String str = new String(chars, 0, length);
+        boolean isWhole = INTEGER_PATTERN.matcher(str).matches();
+        // Strings this short are in range, but a leading zero makes the digits octal.
+        boolean isInteger = isWhole && !INVALID_OCTAL_PATTERN.matcher(str).matches();
+        boolean isFloat = isWhole || FLOAT_PATTERN.matcher(str).matches();
+        boolean isDouble = isFloat || DOUBLE_PATTERN.matcher(str).matches();
+        boolean isLong =
+            LONG_PATTERN.matcher(str).matches() && !INVALID_OCTAL_PATTERN.matcher(str).matches();
+
+        assertWithMessage(str).that(Literal.isIntegerLiteral(str)).isEqualTo(isInteger);
+        assertWithMessage(str).that(Literal.isLongLiteral(str)).isEqualTo(isLong);
+        assertWithMessage(str).that(Literal.isFloatLiteral(str)).isEqualTo(isFloat);
+        assertWithMessage(str).that(Literal.isDoubleLiteral(str)).isEqualTo(isDouble);
+        assertWithMessage(str)
+            .that(Literal.isLiteral(str))
+            .isEqualTo(isInteger || isLong || isFloat || isDouble);
+      }
+    }
+  }
+
   @Test
   public void literalDetected() {
     assertThat(Literal.isLiteral("False")).isFalse();
@@ -18,10 +18,13 @@ import static junit.framework.Assert.assertEquals;
 
 import com.google.api.generator.engine.ast.AssignmentExpr;
 import com.google.api.generator.engine.ast.AstNode;
+import com.google.api.generator.engine.ast.AstTraversal;
 import com.google.api.generator.engine.ast.ClassDefinition;
+import com.google.api.generator.engine.ast.ConcreteReference;
 import com.google.api.generator.engine.ast.MethodInvocationExpr;
 import com.google.api.generator.engine.ast.Reference;
 import com.google.api.generator.engine.ast.TypeNode;
+import com.google.api.generator.engine.ast.VaporReference;
 import com.google.api.generator.engine.ast.Variable;
 import com.google.api.generator.engine.ast.VariableExpr;
 import java.util.ArrayList;
@@ -72,21 +75,27 @@ public class ImportWriterVisitorTest {
         Arrays.asList(
             Reference.withClazz(ClassDefinition.class), Reference.withClazz(AstNode.class));
     Reference nestedGenericRef =
-        Reference.builder().setClazz(Map.Entry.class).setGenerics(nestedSubGenerics).build();
+        ConcreteReference.builder()
+            .setClazz(Map.Entry.class)
+            .setGenerics(nestedSubGenerics)
+            .build();
 
     List<Reference> subGenerics =
         Arrays.asList(Reference.withClazz(AssignmentExpr.class), nestedGenericRef);
     Reference genericRef =
-        Reference.builder().setClazz(Map.Entry.class).setGenerics(subGenerics).build();
+        ConcreteReference.builder().setClazz(Map.Entry.class).setGenerics(subGenerics).build();
     Reference reference =
-        Reference.builder().setClazz(List.class).setGenerics(Arrays.asList(genericRef)).build();
+        ConcreteReference.builder()
+            .setClazz(List.class)
+            .setGenerics(Arrays.asList(genericRef))
+            .build();
     TypeNode type = TypeNode.withReference(reference);
     Variable variable = Variable.builder().setName("clazz").setType(type).build();
     VariableExpr variableExpr =
         VariableExpr.builder().setVariable(variable).setIsDecl(true).build();
 
     Reference returnReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(ArrayList.class)
             .setGenerics(Arrays.asList(genericRef))
             .build();
@@ -112,6 +121,86 @@ public class ImportWriterVisitorTest {
             "import java.util.List;\n\n"));
   }
 
+  @Test
+  public void writeAssignmentExprImports_vaporReferences() {
+    Reference pageReference =
+        VaporReference.builder()
+            .setPakkage("com.google.example.library.v1")
+            .setEnclosingClassName("LibraryClient")
+            .setSimpleName("ListShelvesPage")
+            .build();
+    Reference shelfReference =
+        VaporReference.builder()
+            .setPakkage("com.google.example.library.v1")
+            .setSimpleName("Shelf")
+            .setGenerics(
+                Arrays.asList(
+                    pageReference,
+                    VaporReference.builder()
+                        .setPakkage(CURRENT_PACKAGE)
+                        .setSimpleName("Book")
+                        .build()))
+            .build();
+    Variable variable =
+        Variable.builder().setName("shelf").setType(TypeNode.withReference(shelfReference)).build();
+    VariableExpr variableExpr =
+        VariableExpr.builder().setVariable(variable).setIsDecl(true).build();
+
+    MethodInvocationExpr valueExpr =
+        MethodInvocationExpr.builder()
+            .setMethodName("getShelf")
+            .setReturnType(TypeNode.withReference(shelfReference))
+            .build();
+
+    AssignmentExpr assignExpr =
+        AssignmentExpr.builder().setVariableExpr(variableExpr).setValueExpr(valueExpr).build();
+
+    assignExpr.accept(writerVisitor);
+    assertEquals(
+        writerVisitor.write(),
+        String.format(
+            createLines(2),
+            "import static com.google.example.library.v1.LibraryClient.ListShelvesPage;\n\n",
+            "import com.google.example.library.v1.Shelf;\n\n"));
+  }
+
+  @Test
+  public void writeAssignmentExprImports_fusedWalk() {
+    Variable variable =
+        Variable.builder().setName("clazz").setType(createType(AstNode.class)).build();
+    VariableExpr variableExpr =
+        VariableExpr.builder().setVariable(variable).setIsDecl(true).build();
+    MethodInvocationExpr valueExpr =
+        MethodInvocationExpr.builder()
+            .setMethodName("createClass")
+            .setStaticReferenceName(ClassDefinition.class.getSimpleName())
+            .setReturnType(createType(ClassDefinition.class))
+            .build();
+    AssignmentExpr assignExpr =
+        AssignmentExpr.builder().setVariableExpr(variableExpr).setValueExpr(valueExpr).build();
+    int[] nodeCount = {0};
+
+    AstTraversal.walk(
+        assignExpr,
+        AstTraversal.fuse(
+            writerVisitor,
+            new AstTraversal.Listener() {
+              @Override
+              public boolean enter(AstNode node) {
+                nodeCount[0]++;
+                return true;
+              }
+            }));
+
+    assertEquals(nodeCount[0], 9);
+    assertEquals(
+        writerVisitor.write(),
+        String.format(
+            createLines(2),
+            "import com.google.api.generator.engine.ast.AstNode;\n",
+            "import com.google.api.generator.engine.ast.ClassDefinition;\n\n"));
+  }
+
   private static TypeNode createType(Class clazz) {
     return TypeNode.withReference(Reference.withClazz(clazz));
   }
@@ -20,7 +20,9 @@ import static org.junit.Assert.assertThrows;
 
 import com.google.api.generator.engine.ast.AnnotationNode;
 import com.google.api.generator.engine.ast.AssignmentExpr;
+import com.google.api.generator.engine.ast.AstNode;
 import com.google.api.generator.engine.ast.ClassDefinition;
+import com.google.api.generator.engine.ast.ConcreteReference;
 import com.google.api.generator.engine.ast.Expr;
 import com.google.api.generator.engine.ast.ExprStatement;
 import com.google.api.generator.engine.ast.ForStatement;
@@ -42,13 +44,25 @@ import com.google.api.generator.engine.ast.ValueExpr;
 import com.google.api.generator.engine.ast.Variable;
 import com.google.api.generator.engine.ast.VariableExpr;
 import com.google.api.generator.engine.ast.WhileStatement;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
 import javax.lang.model.type.NullType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -283,14 +297,14 @@ public class JavaWriterVisitorTest {
   @Test
   public void writeMethodInvocationExpr_genericWithArgs() {
     Reference mapReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(HashMap.class)
             .setGenerics(
                 Arrays.asList(
                     Reference.withClazz(String.class), Reference.withClazz(Integer.class)))
             .build();
     Reference outerMapReference =
-        Reference.builder()
+        ConcreteReference.builder()
             .setClazz(HashMap.class)
             .setGenerics(Arrays.asList(mapReference, mapReference))
             .build();
@@ -877,10 +891,11 @@ public class JavaWriterVisitorTest {
         Arrays.asList(
             Reference.withClazz(String.class), Reference.withClazz(MethodDefinition.class));
     Reference mapEntryReference =
-        Reference.builder().setClazz(Map.Entry.class).setGenerics(subGenerics).build();
+        ConcreteReference.builder().setClazz(Map.Entry.class).setGenerics(subGenerics).build();
     List<Reference> generics =
         Arrays.asList(Reference.withClazz(ClassDefinition.class), mapEntryReference);
-    Reference mapReference = Reference.builder().setClazz(Map.class).setGenerics(generics).build();
+    Reference mapReference =
+        ConcreteReference.builder().setClazz(Map.class).setGenerics(generics).build();
 
     List<Statement> statements =
         Arrays.asList(
@@ -975,6 +990,337 @@ public class JavaWriterVisitorTest {
             "}"));
   }
 
+  @Test
+  public void writeClassDefinition_deeplyNestedClassesCollectImportsOnce() {
+    int nestingDepth = 50;
+    ClassDefinition classDef =
+        ClassDefinition.builder()
+            .setName("Nested" + nestingDepth)
+            .setIsNested(true)
+            .setScope(ScopeNode.PRIVATE)
+            .setIsStatic(true)
+            .setStatements(
+                Arrays.asList(
+                    ExprStatement.withExpr(
+                        VariableExpr.builder()
+                            .setVariable(
+                                createVariable(
+                                    "x",
+                                    TypeNode.withReference(
+                                        Reference.withClazz(AssignmentExpr.class))))
+                            .setIsDecl(true)
+                            .setScope(ScopeNode.PRIVATE)
+                            .build())))
+            .build();
+    for (int i = nestingDepth - 1; i > 0; i--) {
+      classDef =
+          ClassDefinition.builder()
+              .setName("Nested" + i)
+              .setIsNested(true)
+              .setScope(ScopeNode.PRIVATE)
+              .setIsStatic(true)
+              .setNestedClasses(Arrays.asList(classDef))
+              .build();
+    }
+    classDef =
+        ClassDefinition.builder()
+            .setPackageString("com.google.example.library.v1.stub")
+            .setName("LibraryServiceStub")
+            .setScope(ScopeNode.PUBLIC)
+            .setNestedClasses(Arrays.asList(classDef))
+            .build();
+
+    int[] importClassVisitCount = {0};
+    JavaWriterVisitor countingWriterVisitor =
+        new JavaWriterVisitor(
+            currentPackage ->
+                new ImportWriterVisitor(currentPackage) {
+                  @Override
+                  public boolean enter(AstNode node) {
+                    if (node instanceof ClassDefinition) {
+                      importClassVisitCount[0]++;
+                    }
+                    return super.enter(node);
+                  }
+                });
+    classDef.accept(countingWriterVisitor);
+
+    // Each class is visited once for imports, rather than once per enclosing class.
+    assertThat(importClassVisitCount[0]).isEqualTo(nestingDepth + 1);
+    String code = countingWriterVisitor.write();
+    String importLine = "import com.google.api.generator.engine.ast.AssignmentExpr;\n";
+    assertThat(code)
+        .startsWith("package com.google.example.library.v1.stub;\n\n" + importLine + "\n");
+    assertThat(code.indexOf(importLine)).isEqualTo(code.lastIndexOf(importLine));
+  }
+
+  @Test
+  public void writeClassDefinition_toSink() throws IOException {
+    ClassDefinition classDef =
+        ClassDefinition.builder()
+            .setPackageString("com.google.example.library.v1.stub")
+            .setName("LibraryServiceStub")
+            .setScope(ScopeNode.PUBLIC)
+            .setStatements(
+                Arrays.asList(
+                    ExprStatement.withExpr(
+                        VariableExpr.builder()
+                            .setVariable(
+                                createVariable(
+                                    "x",
+                                    TypeNode.withReference(
+                                        Reference.withClazz(AssignmentExpr.class))))
+                            .setIsDecl(true)
+                            .setScope(ScopeNode.PRIVATE)
+                            .build())))
+            .build();
+    classDef.accept(writerVisitor);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    JavaWriterVisitor sinkWriterVisitor = new JavaWriterVisitor(writer);
+    classDef.accept(sinkWriterVisitor);
+    writer.flush();
+
+    assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+        .isEqualTo(writerVisitor.write());
+    assertThrows(IllegalStateException.class, () -> sinkWriterVisitor.write());
+  }
+
+  @Test
+  public void writeClassDefinition_recordsFlightRecorderEvents() throws IOException {
+    ClassDefinition nestedClassDef =
+        ClassDefinition.builder()
+            .setName("Settings")
+            .setScope(ScopeNode.PRIVATE)
+            .setIsNested(true)
+            .setIsStatic(true)
+            .setStatements(
+                Arrays.asList(
+                    ExprStatement.withExpr(
+                        createFieldDeclExpr(
+                            "pageSizes", TypeNode.withReference(Reference.withClazz(Map.class)))),
+                    ExprStatement.withExpr(
+                        createFieldDeclExpr(
+                            "names", TypeNode.withReference(Reference.withClazz(List.class))))))
+            .build();
+    ClassDefinition classDef =
+        ClassDefinition.builder()
+            .setPackageString("com.google.example.library.v1.stub")
+            .setName("LibraryServiceStub")
+            .setScope(ScopeNode.PUBLIC)
+            .setStatements(
+                Arrays.asList(
+                    ExprStatement.withExpr(
+                        createFieldDeclExpr(
+                            "shelves", TypeNode.withReference(Reference.withClazz(List.class))))))
+            .setNestedClasses(Arrays.asList(nestedClassDef))
+            .build();
+
+    List<RecordedEvent> events;
+    Path recordingFile = Files.createTempFile("writer", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.google.api.generator.ClassRender");
+      recording.enable("com.google.api.generator.ImportCollection");
+      recording.start();
+      classDef.accept(writerVisitor);
+      recording.stop();
+      recording.dump(recordingFile);
+      events = RecordingFile.readAllEvents(recordingFile);
+    } finally {
+      Files.delete(recordingFile);
+    }
+
+    List<String> importEvents = new ArrayList<>();
+    List<String> renderEvents = new ArrayList<>();
+    for (RecordedEvent event : events) {
+      if (event.getEventType().getName().equals("com.google.api.generator.ImportCollection")) {
+        importEvents.add(
+            String.format(
+                "%s %d %d",
+                event.getString("className"),
+                event.getInt("importsAdded"),
+                event.getInt("staticImportsAdded")));
+      } else {
+        renderEvents.add(
+            String.format(
+                "%s %b %d %d %d",
+                event.getString("className"),
+                event.getBoolean("nested"),
+                event.getInt("methodCount"),
+                event.getInt("statementCount"),
+                event.getLong("charactersEmitted")));
+      }
+    }
+    // Imports are counted once, by the first class that needs them, and include nested classes.
+    assertThat(importEvents).containsExactly("Settings 1 0", "LibraryServiceStub 2 0").inOrder();
+    assertThat(renderEvents).hasSize(2);
+    assertThat(renderEvents.get(0)).startsWith("Settings true 0 2 ");
+    assertThat(renderEvents.get(1))
+        .isEqualTo(
+            String.format("LibraryServiceStub false 0 1 %d", writerVisitor.write().length()));
+  }
+
+  @Test
+  public void writeClassDefinition_explicitStackMatchesRecursive() {
+    Statement assignExprStatement =
+        ExprStatement.withExpr(createAssignmentExpr("x", "3", TypeNode.INT));
+    VariableExpr condExpr = createVariableExpr("condition", TypeNode.BOOLEAN);
+    IfStatement ifStatement =
+        IfStatement.builder()
+            .setConditionExpr(condExpr)
+            .setBody(
+                Arrays.asList(
+                    WhileStatement.builder()
+                        .setConditionExpr(condExpr)
+                        .setBody(Arrays.asList(assignExprStatement))
+                        .build()))
+            .addElseIf(condExpr, Arrays.asList(assignExprStatement))
+            .setElseBody(
+                Arrays.asList(
+                    ForStatement.builder()
+                        .setLocalVariableExpr(createVariableDeclExpr("str", TypeNode.STRING))
+                        .setCollectionExpr(
+                            MethodInvocationExpr.builder().setMethodName("getSomeStrings").build())
+                        .setBody(Arrays.asList(assignExprStatement))
+                        .build()))
+            .build();
+    TryCatchStatement tryCatch =
+        TryCatchStatement.builder()
+            .setTryResourceExpr(createAssignmentExpr("aBool", "false", TypeNode.BOOLEAN))
+            .setTryBody(Arrays.asList(ifStatement))
+            .setCatchVariableExpr(
+                createVariableDeclExpr(
+                    "e", TypeNode.withReference(Reference.withClazz(IOException.class))))
+            .setCatchBody(Arrays.asList(assignExprStatement))
+            .build();
+    MethodDefinition method =
+        MethodDefinition.builder()
+            .setScope(ScopeNode.PUBLIC)
+            .setAnnotations(Arrays.asList(AnnotationNode.DEPRECATED))
+            .setReturnType(TypeNode.INT)
+            .setName("close")
+            .setArguments(Arrays.asList(createVariableDeclExpr("condition", TypeNode.BOOLEAN)))
+            .setBody(Arrays.asList(tryCatch))
+            .setReturnExpr(createVariableExpr("x", TypeNode.INT))
+            .build();
+    ClassDefinition classDef =
+        ClassDefinition.builder()
+            .setPackageString("com.google.example.library.v1.stub")
+            .setName("LibraryServiceStub")
+            .setScope(ScopeNode.PUBLIC)
+            .setMethods(Arrays.asList(method))
+            .setNestedClasses(
+                Arrays.asList(
+                    ClassDefinition.builder()
+                        .setName("Shelf")
+                        .setIsNested(true)
+                        .setScope(ScopeNode.PRIVATE)
+                        .setMethods(Arrays.asList(method))
+                        .build()))
+            .build();
+    classDef.accept(writerVisitor);
+
+    JavaWriterVisitor stackWriterVisitor = new JavaWriterVisitor();
+    stackWriterVisitor.setTraversalMode(JavaWriterVisitor.TraversalMode.EXPLICIT_STACK);
+    classDef.accept(stackWriterVisitor);
+
+    assertThat(stackWriterVisitor.write()).isEqualTo(writerVisitor.write());
+  }
+
+  @Test
+  public void writeMethodInvocationExpr_deepChainWithExplicitStack() {
+    int chainLength = 100_000;
+    Expr chainExpr = createVariableExpr("settingsBuilder", TypeNode.STRING);
+    for (int i = 0; i < chainLength; i++) {
+      chainExpr =
+          MethodInvocationExpr.builder()
+              .setExprReferenceExpr(chainExpr)
+              .setMethodName("setRetryable")
+              .setArguments(Arrays.asList(createVariableExpr("condition", TypeNode.BOOLEAN)))
+              .build();
+    }
+    ClassDefinition classDef =
+        ClassDefinition.builder()
+            .setPackageString("com.google.example.library.v1.stub")
+            .setName("LibraryServiceStubSettings")
+            .setScope(ScopeNode.PUBLIC)
+            .setMethods(
+                Arrays.asList(
+                    MethodDefinition.builder()
+                        .setScope(ScopeNode.PUBLIC)
+                        .setReturnType(TypeNode.VOID)
+                        .setName("build")
+                        .setBody(Arrays.asList(ExprStatement.withExpr(chainExpr)))
+                        .build()))
+            .build();
+
+    writerVisitor.setTraversalMode(JavaWriterVisitor.TraversalMode.EXPLICIT_STACK);
+    classDef.accept(writerVisitor);
+
+    StringBuilder expected = new StringBuilder();
+    expected.append("package com.google.example.library.v1.stub;\n\n");
+    expected.append("public class LibraryServiceStubSettings {\n");
+    expected.append("public void build() {\n");
+    expected.append("settingsBuilder");
+    for (int i = 0; i < chainLength; i++) {
+      expected.append(".setRetryable(condition)");
+    }
+    expected.append(";\n}\n}");
+    assertThat(writerVisitor.write()).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void writeIfStatement_deeplyNestedWithExplicitStack() {
+    int nestingDepth = 100_000;
+    VariableExpr condExpr = createVariableExpr("condition", TypeNode.BOOLEAN);
+    Statement statement = ExprStatement.withExpr(createAssignmentExpr("x", "3", TypeNode.INT));
+    for (int i = 0; i < nestingDepth; i++) {
+      statement =
+          IfStatement.builder()
+              .setConditionExpr(condExpr)
+              .setBody(Collections.singletonList(statement))
+              .build();
+    }
+
+    writerVisitor.setTraversalMode(JavaWriterVisitor.TraversalMode.EXPLICIT_STACK);
+    statement.accept(writerVisitor);
+
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < nestingDepth; i++) {
+      expected.append("if (condition) {\n");
+    }
+    expected.append("int x = 3;\n");
+    for (int i = 0; i < nestingDepth; i++) {
+      expected.append("}\n");
+    }
+    assertThat(writerVisitor.write()).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void writeIdentifier_sinkFailure() {
+    Appendable failingSink =
+        new Appendable() {
+          @Override
+          public Appendable append(CharSequence csq) throws IOException {
+            throw new IOException("Disk full");
+          }
+
+          @Override
+          public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            throw new IOException("Disk full");
+          }
+
+          @Override
+          public Appendable append(char c) throws IOException {
+            throw new IOException("Disk full");
+          }
+        };
+    IdentifierNode identifier = IdentifierNode.builder().setName("foobar").build();
+    assertThrows(
+        UncheckedIOException.class, () -> identifier.accept(new JavaWriterVisitor(failingSink)));
+  }
+
   private static String createLines(int numLines) {
     return new String(new char[numLines]).replace("\0", "%s");
   }
@@ -995,6 +1341,14 @@ public class JavaWriterVisitorTest {
     return createVariableExpr(variableName, type, true);
   }
 
+  private static VariableExpr createFieldDeclExpr(String variableName, TypeNode type) {
+    return VariableExpr.builder()
+        .setVariable(createVariable(variableName, type))
+        .setIsDecl(true)
+        .setScope(ScopeNode.PRIVATE)
+        .build();
+  }
+
   private static VariableExpr createVariableExpr(
       String variableName, TypeNode type, boolean isDecl) {
     return VariableExpr.builder()